@@ -100,6 +100,15 @@ public abstract class Oml2BikeshedTask extends DefaultTask {
 	@Input
     public abstract Property<String> getPublishUrl();
 
+	/**
+	 * The number of threads used to load the OML files of the catalog up front
+	 * 
+	 * @return Integer Property
+	 */
+    @Input
+    @Optional
+    public abstract Property<Integer> getThreads();
+
 	/**
 	 * The debug flag
 	 * 
@@ -158,6 +167,10 @@ public abstract class Oml2BikeshedTask extends DefaultTask {
 			args.add("-r");
 			args.add(getRootOntologyIri().get());
 		}
+		if (getThreads().isPresent()) {
+			args.add("-t");
+			args.add(getThreads().get().toString());
+		}
 		if (getDebug().isPresent() && getDebug().get()) {
 			args.add("-d");
 		}
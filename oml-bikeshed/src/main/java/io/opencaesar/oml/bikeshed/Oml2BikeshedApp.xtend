@@ -29,6 +29,8 @@ import io.opencaesar.oml.resource.OmlXMIResourceFactory
 import io.opencaesar.oml.util.OmlConstants
 import io.opencaesar.oml.util.OmlRead
 import io.opencaesar.oml.util.OmlResolve
+import io.opencaesar.oml.validate.OmlCatalogIndex
+import io.opencaesar.oml.validate.OmlLoader
 import io.opencaesar.oml.validate.OmlValidator
 import java.io.BufferedWriter
 import java.io.File
@@ -110,10 +112,18 @@ class Oml2BikeshedApp {
 	)
 	boolean force
 		
+	@Parameter(
+		names=#["--threads", "-t"], 
+		description="Number of threads used to load the OML files of the catalog up front (Optional, by default the import closure of the root ontology is loaded as needed)", 
+		validateWith=ThreadCount, 
+		order=8
+	)
+	int threads = 1
+		
 	@Parameter(
 		names=#["-debug", "--d"], 
 		description="Shows debug logging statements", 
-		order=8
+		order=9
 	)
 	boolean debug
 
@@ -121,7 +131,7 @@ class Oml2BikeshedApp {
 		names=#["--help","-h"], 
 		description="Displays summary of options", 
 		help=true, 
-		order=9
+		order=10
 	)
 	boolean help
 
@@ -129,7 +139,7 @@ class Oml2BikeshedApp {
 		names=#["--version","-v"], 
 		description="Displays app version", 
 		help=true, 
-		order=10
+		order=11
 	)
 	boolean version
 	
@@ -181,6 +191,7 @@ class Oml2BikeshedApp {
 		LOGGER.info("Input Catalog= " + inputCatalogPath)
 		LOGGER.info("Root Ontology= " + rootOntologyIri)
 		LOGGER.info("Output Folder= " + outputFolderPath)
+		LOGGER.info("Threads= " + threads)
 		
         val inputCatalogUri = URI.createFileURI(inputCatalogPath);
 		
@@ -190,6 +201,11 @@ class Oml2BikeshedApp {
 		val inputResourceSet = new ResourceSetImpl
 		inputResourceSet.eAdapters.add(new ECrossReferenceAdapter)
 		
+		// parse the OML files of the catalog in parallel
+		if (threads > 1) {
+			OmlLoader.load(inputResourceSet, collectOmlFiles(inputCatalogUri).map[URI.createFileURI(absolutePath)].toList, threads)
+		}
+		
 		var rootUri = resolveRootOntologyIri(rootOntologyIri, inputCatalogUri)
 		val rootOntology = OmlRead.getOntology(inputResourceSet.getResource(rootUri, true))
 		val scope = OmlRead.getImportScope(rootOntology)
@@ -301,7 +317,7 @@ class Oml2BikeshedApp {
 	 * @return Collection of Files
 	 */
 	def static Collection<File> collectOmlFiles(URI inputCatalogUri) {
-		OmlResolve.resolveOmlFileUris(inputCatalogUri).stream
+		OmlCatalogIndex.resolveOmlFileUris(inputCatalogUri).stream
 			.map(i|new File(i.toFileString))
 			.collect(Collectors.toList)
 	}
@@ -359,6 +375,26 @@ class Oml2BikeshedApp {
 	  	}
 	}
 	
+	/**
+	 * The validator for thread counts
+	 */
+	static class ThreadCount implements IParameterValidator {
+		/**
+		 * Creates a new ThreadCount object
+		 */
+		new() {}
+		override validate(String name, String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) > 0) {
+					return
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			throw new ParameterException("Parameter " + name + " should be a positive number of threads")
+	  	}
+	}
+	
 	/**
 	 * Get application version id from properties file.
 	 * @return version string from build.properties or UNKNOWN
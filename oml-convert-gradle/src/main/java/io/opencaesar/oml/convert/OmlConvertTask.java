@@ -32,6 +32,7 @@ import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
@@ -65,7 +66,7 @@ public abstract class OmlConvertTask extends DefaultTask {
     public abstract Property<File> getOutputCatalogPath();
 
 	/**
-	 * The extension for the output OML files (options: oml, omlxmi, omljson)
+	 * The extension for the output OML files (options: oml, omlxmi, omljson, omlbin)
 	 * 
 	 * @return String Property
 	 */
@@ -80,6 +81,42 @@ public abstract class OmlConvertTask extends DefaultTask {
     @Input
     public abstract Property<Boolean> getUseCatalog();
     
+	/**
+	 * The number of threads used to load the input OML files (default: 1)
+	 * 
+	 * @return Integer Property
+	 */
+    @Input
+    @Optional
+    public abstract Property<Integer> getThreads();
+    
+	/**
+	 * The number of threads used to save the output OML files (default: 1)
+	 * 
+	 * @return Integer Property
+	 */
+    @Input
+    @Optional
+    public abstract Property<Integer> getSaveThreads();
+    
+	/**
+	 * The number of input OML files converted per batch, each loaded with its import closure and released once saved (default: all the files in one batch)
+	 * 
+	 * @return Integer Property
+	 */
+    @Input
+    @Optional
+    public abstract Property<Integer> getBatchSize();
+    
+	/**
+	 * The path of a file recording the output files converted from the input files between builds, so only the stale output files are converted again
+	 * 
+	 * @return File Property
+	 */
+    @Internal
+    @Optional
+    public abstract Property<File> getManifest();
+    
 	/**
 	 * The debug flag
 	 * 
@@ -130,6 +167,22 @@ public abstract class OmlConvertTask extends DefaultTask {
 			args.add("-u");
 			args.add(getUseCatalog().get().toString());
 		}
+		if (getThreads().isPresent()) {
+			args.add("-t");
+			args.add(getThreads().get().toString());
+		}
+		if (getSaveThreads().isPresent()) {
+			args.add("-s");
+			args.add(getSaveThreads().get().toString());
+		}
+		if (getBatchSize().isPresent()) {
+			args.add("-b");
+			args.add(getBatchSize().get().toString());
+		}
+		if (getManifest().isPresent()) {
+			args.add("-m");
+			args.add(getManifest().get().getAbsolutePath());
+		}
 		if (getDebug().isPresent() && getDebug().get()) {
 			args.add("-d");
 		}
@@ -0,0 +1,147 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.convert;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+
+import io.opencaesar.oml.validate.DependencyCache;
+
+/**
+ * A manifest of the output files converted from the input files of a catalog, which is persisted
+ * between runs.
+ *
+ * For each input file, the manifest keeps the output file converted from it. An output file is stale
+ * when its input file is outdated (see {@link DependencyCache}), or when the output file is missing.
+ * All output files are stale when the conversion settings or the contents of the catalog file changed.
+ * The output file converted from an input file changes with the IRI of its ontology, in which case the
+ * previous output file is obsolete like those of the input files removed from the catalog.
+ */
+class ConversionManifest extends DependencyCache<String> {
+
+	private static final int MAGIC = 0x4F4D4C43; // "OMLC"
+	private static final int VERSION = 2;
+
+	private final Map<URI, String> previousOutputs = new HashMap<>();
+
+	private ConversionManifest(Path path) {
+		super(path, MAGIC, VERSION);
+	}
+
+	/**
+	 * Loads the manifest at the given path, or creates an empty one if there is no (readable) manifest there
+	 *
+	 * @param path the path of the manifest file
+	 * @return the conversion manifest
+	 */
+	public static ConversionManifest load(Path path) {
+		ConversionManifest manifest = new ConversionManifest(path);
+		manifest.load();
+		return manifest;
+	}
+
+	/**
+	 * Returns the URIs of the given input files whose output files are stale, in order
+	 *
+	 * @param settings a description of the conversion settings
+	 * @param catalogFile the input catalog file
+	 * @param uris the URIs of the input files of the catalog
+	 * @return the URIs of the input files to convert
+	 * @throws IOException error
+	 */
+	public List<URI> getStaleUris(String settings, File catalogFile, List<URI> uris) throws IOException {
+		List<URI> stale = getOutdatedUris(settings + " " + HexFormat.of().formatHex(hash(catalogFile.toPath())), uris);
+
+		// the stale files that are not converted in the end (e.g., due to an error) stay stale
+		for (URI uri : stale) {
+			String output = get(uri);
+			if (output != null) {
+				previousOutputs.put(uri, output);
+			}
+			remove(uri);
+		}
+		return stale;
+	}
+
+	@Override
+	protected boolean isCurrent(String output) {
+		return new File(output).exists();
+	}
+
+	/**
+	 * Records the output file converted from the given input file
+	 *
+	 * @param uri the URI of the input file
+	 * @param output the URI of the output file
+	 * @param imports the URIs of the input files in the import closure of the input file
+	 */
+	public void record(URI uri, URI output, Collection<URI> imports) {
+		record(uri, output.toFileString(), imports);
+	}
+
+	/**
+	 * Removes the entries of the input files that were removed from the catalog, and returns their
+	 * output files, along with the previous output files of the input files converted to other output
+	 * files (except those also converted from a current input file)
+	 *
+	 * @return the output files to delete
+	 */
+	public List<File> removeObsoleteOutputs() {
+		Set<String> currentOutputs = new HashSet<>(getValues().values());
+		Set<String> obsoleteOutputs = new LinkedHashSet<>(removeDeletedFiles());
+		for (Map.Entry<URI, String> previous : previousOutputs.entrySet()) {
+			String output = get(previous.getKey());
+			if (output != null && !output.equals(previous.getValue())) {
+				obsoleteOutputs.add(previous.getValue());
+			}
+		}
+		previousOutputs.clear();
+		List<File> outputs = new ArrayList<>();
+		for (String output : obsoleteOutputs) {
+			if (!currentOutputs.contains(output)) {
+				outputs.add(new File(output));
+			}
+		}
+		return outputs;
+	}
+
+	@Override
+	protected String readValue(DataInputStream in) throws IOException {
+		return in.readUTF();
+	}
+
+	@Override
+	protected void writeValue(DataOutputStream out, String output) throws IOException {
+		out.writeUTF(output);
+	}
+}
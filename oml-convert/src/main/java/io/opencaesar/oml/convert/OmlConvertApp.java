@@ -18,13 +18,30 @@
  */
 package io.opencaesar.oml.convert;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import org.apache.log4j.Appender;
@@ -35,8 +52,10 @@ import org.apache.log4j.Logger;
 import org.apache.log4j.xml.DOMConfigurator;
 import org.eclipse.emf.common.util.URI;
 import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
@@ -44,10 +63,12 @@ import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 
 import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.resource.OmlBinaryResourceFactory;
 import io.opencaesar.oml.resource.OmlJsonResourceFactory;
 import io.opencaesar.oml.resource.OmlXMIResourceFactory;
 import io.opencaesar.oml.util.OmlRead;
-import io.opencaesar.oml.util.OmlResolve;
+import io.opencaesar.oml.validate.OmlCatalogIndex;
+import io.opencaesar.oml.validate.OmlLoader;
 import io.opencaesar.oml.validate.OmlValidator;
 
 /**
@@ -73,12 +94,12 @@ public class OmlConvertApp {
 
 	@Parameter(
 		names = { "--output-file-extension", "-f" },
-		description = "Extension for the output OML files (options: oml, omlxmi, omljson)",
+		description = "Extension for the output OML files (options: oml, omlxmi, omljson, omlbin)",
 		required = true,
 		order = 3)
 	private OML_EXTENSIONS outputFileExtension;
 
-	enum OML_EXTENSIONS { oml, omlxmi, omljson }
+	enum OML_EXTENSIONS { oml, omlxmi, omljson, omlbin }
 	
 	@Parameter(
 		names = { "--use-catalog", "-u" },
@@ -88,24 +109,51 @@ public class OmlConvertApp {
 		order = 4)
 	private boolean useCatalog = true;
 	
+	@Parameter(
+		names = { "--threads", "-t" },
+		description = "Number of threads used to load the input OML files (default: 1)",
+		validateWith = ThreadCount.class,
+		order = 5)
+	private int threads = 1;
+	
+	@Parameter(
+		names = { "--save-threads", "-s" },
+		description = "Number of threads used to save the output OML files (default: 1)",
+		validateWith = ThreadCount.class,
+		order = 6)
+	private int saveThreads = 1;
+	
+	@Parameter(
+		names = { "--batch-size", "-b" },
+		description = "Number of input OML files converted per batch, each loaded with its import closure and released once saved (default: all the files in one batch)",
+		validateWith = BatchSize.class,
+		order = 7)
+	private int batchSize = 0;
+	
+	@Parameter(
+		names = { "--manifest", "-m" },
+		description = "Path of a file recording the output files converted from the input files between runs, so only the stale output files are converted again (Optional)",
+		order = 8)
+	private String manifestPath;
+	
 	@Parameter(
 		names= {"-debug", "--d"}, 
 		description="Shows debug logging statements", 
-		order=5)
+		order=9)
 	private boolean debug;
 
 	@Parameter(
 		names= {"--help","-h"}, 
 		description="Displays summary of options", 
 		help=true, 
-		order=6)
+		order=10)
 	private boolean help;
 
 	@Parameter(
 		names= {"--version","-v"}, 
 		description="Displays app version", 
 		help=true, 
-		order=7)
+		order=11)
 	private boolean version;
 	
 	private Logger LOGGER = LogManager.getLogger(OmlConvertApp.class);
@@ -156,26 +204,184 @@ public class OmlConvertApp {
 		LOGGER.info("Output catalog path= " + outputCatalogPath);
 		LOGGER.info("Output file extension= " + outputFileExtension);
 		LOGGER.info("Use catalog= " + useCatalog);
+		LOGGER.info("Threads= " + threads);
+		LOGGER.info("Save threads= " + saveThreads);
+		LOGGER.info("Batch size= " + (batchSize > 0 ? batchSize : "all"));
+		LOGGER.info("Manifest= " + manifestPath);
 		
 		OmlStandaloneSetup.doSetup();
 		OmlXMIResourceFactory.register(useCatalog);
 		OmlJsonResourceFactory.register(useCatalog);
-		final var resourceSet = new ResourceSetImpl();
-		resourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		OmlBinaryResourceFactory.register();
 		
 		final var inputCatalogUri = URI.createFileURI(inputCatalogPath);
+		final var outputCatalogFile = new File(outputCatalogPath);
+		final var outputFolderPath = outputCatalogFile.getParentFile().getAbsolutePath();
 
 		// load the OML ontologies
 		final var inputFiles = collectOMLFiles(inputCatalogUri);
-		final var inputResources = new ArrayList<Resource>();
+		final var inputUris = new ArrayList<URI>();
 		for (File inputFile : inputFiles) {
-			final var inputUri = URI.createFileURI(inputFile.getAbsolutePath());
-			LOGGER.info(("Reading: " + inputUri));
-			final var inputResource = resourceSet.getResource(inputUri, true);
-			inputResources.add(inputResource);
+			inputUris.add(URI.createFileURI(inputFile.getAbsolutePath()));
+		}
+		if (manifestPath != null) {
+			// only the stale output files are converted again, and those of removed input files are deleted
+			final var manifest = ConversionManifest.load(Paths.get(manifestPath));
+			final var staleUris = manifest.getStaleUris(outputFileExtension+" "+useCatalog+" "+outputFolderPath, new File(inputCatalogPath), inputUris);
+			LOGGER.info(staleUris.size()+" of "+inputUris.size()+" OML files to convert");
+			try {
+				convertInBatches(inputUris, staleUris, outputCatalogFile, manifest);
+				for (var output : manifest.removeObsoleteOutputs()) {
+					LOGGER.info("Deleting: "+output);
+					Files.deleteIfExists(output.toPath());
+				}
+			} finally {
+				manifest.save();
+			}
+		} else if (batchSize > 0) {
+			convertInBatches(inputUris, inputUris, outputCatalogFile, null);
+		} else {
+			final var resourceSet = createResourceSet();
+			final var inputResources = OmlLoader.load(resourceSet, inputUris, threads);
+			
+			// resolve all the cross references, so the resource set is not modified while the files are saved in parallel
+			// (the loader already resolves them with more than one thread)
+			if (threads <= 1) {
+				EcoreUtil.resolveAll(resourceSet);
+			}
+			
+			// validate resources
+			validate(inputResources);
+
+			// create the output OML catalog
+			createOutputCatalog(outputCatalogFile);
+
+			// convert the input OML files to the output format
+			final var outputResources = new ArrayList<Resource>();
+			for (var inputResource : inputResources) {
+				outputResources.add(createOutputResource(resourceSet, inputResource, outputFolderPath));
+			}
+
+			// save the output OML files
+			save(outputResources);
 		}
+
+		LOGGER.info("=================================================================");
+		LOGGER.info("                          E N D");
+		LOGGER.info("=================================================================");
+	}
+	
+	/**
+	 * Converts the given input OML files in batches of the batch size (or in one batch), in order. Each batch is
+	 * loaded into a resource set of its own, along with the files it references, and the resource set is released once
+	 * the batch is saved. The files to convert that the batch references and that are not converted yet are
+	 * converted with the batch (rather than loaded again later). The output files are staged next to their
+	 * final paths, and only replace them once all the batches are validated, so an invalid batch leaves the
+	 * output folder (and the manifest) as it was.
+	 * 
+	 * @param inputUris the URIs of the input OML files of the catalog
+	 * @param convertedUris the URIs of the input OML files to convert
+	 * @param outputCatalogFile the output OML catalog file
+	 * @param manifest the manifest to record the converted files to, or null
+	 * @throws Exception error
+	 */
+	private void convertInBatches(List<URI> inputUris, List<URI> convertedUris, File outputCatalogFile, ConversionManifest manifest) throws Exception {
+		final var outputFolderPath = outputCatalogFile.getParentFile().getAbsolutePath();
+		final var catalogUris = new HashSet<URI>(inputUris);
+		final var remainingUris = new LinkedHashSet<URI>(convertedUris);
+		final var staged = new ConcurrentHashMap<Path, Path>();
+		final var records = new ArrayList<Runnable>();
+		try {
+			while (!remainingUris.isEmpty()) {
+				convertBatch(catalogUris, remainingUris, outputFolderPath, manifest, staged, records);
+			}
+			commit(staged);
+		} finally {
+			discard(staged);
+		}
+		records.forEach(Runnable::run);
+		createOutputCatalog(outputCatalogFile);
+	}
+
+	// converts the next batch of the remaining URIs to staged output files, and adds the manifest records of the batch
+	private void convertBatch(Set<URI> catalogUris, Set<URI> remainingUris, String outputFolderPath, ConversionManifest manifest, Map<Path, Path> staged, List<Runnable> records) throws Exception {
+		final var batchUris = remainingUris.stream().limit(batchSize > 0 ? batchSize : Integer.MAX_VALUE).collect(Collectors.toList());
+		final var resourceSet = createResourceSet();
 		
-		// validate resources
+		// load the batch, and resolve all the cross references (which the loader already does with more than one thread),
+		// so the resource set is not modified while the batch is saved in parallel, and the resources loaded to resolve
+		// them are moved to output resources like the others
+		OmlLoader.load(resourceSet, batchUris, threads);
+		if (threads <= 1) {
+			EcoreUtil.resolveAll(resourceSet);
+		}
+		
+		// the ontologies of the catalog are all moved to output resources (so the cross references between them are
+		// saved as in a single batch), but only those not converted by a previous batch are validated and saved
+		final var inputResources = new ArrayList<Resource>();
+		final var convertedResources = new ArrayList<Resource>();
+		final var convertedResourceUris = new ArrayList<URI>();
+		for (var resource : new ArrayList<>(resourceSet.getResources())) {
+			final var uri = getInputUri(resource);
+			if (catalogUris.contains(uri)) {
+				inputResources.add(resource);
+				if (remainingUris.remove(uri)) {
+					convertedResources.add(resource);
+					convertedResourceUris.add(uri);
+				}
+			}
+		}
+		LOGGER.info("Converting a batch of "+convertedResources.size()+" OML files ("+resourceSet.getResources().size()+" loaded, "+remainingUris.size()+" remaining)");
+		validate(convertedResources);
+		final var importUris = new ArrayList<List<URI>>();
+		if (manifest != null) {
+			for (var convertedResource : convertedResources) {
+				importUris.add(getImportUris(convertedResource));
+			}
+		}
+		final var converted = new HashSet<Resource>(convertedResources);
+		final var outputResources = new ArrayList<Resource>();
+		for (var inputResource : inputResources) {
+			final var outputResource = createOutputResource(resourceSet, inputResource, outputFolderPath);
+			if (converted.contains(inputResource)) {
+				outputResources.add(outputResource);
+			}
+		}
+		stage(outputResources, staged);
+		if (manifest != null) {
+			for (int i = 0; i < outputResources.size(); i++) {
+				final var uri = convertedResourceUris.get(i);
+				final var output = outputResources.get(i).getURI();
+				final var imports = importUris.get(i);
+				records.add(() -> manifest.record(uri, output, imports));
+			}
+		}
+	}
+
+	private static URI getInputUri(Resource resource) {
+		return resource.getURI().isFile() ? URI.createFileURI(new File(resource.getURI().toFileString()).getAbsolutePath()) : resource.getURI();
+	}
+
+	private static List<URI> getImportUris(Resource resource) {
+		final var uris = new ArrayList<URI>();
+		final var ontology = OmlRead.getOntology(resource);
+		if (ontology != null) {
+			for (var r : OmlRead.getImportScope(ontology)) {
+				if (r != resource) {
+					uris.add(getInputUri(r));
+				}
+			}
+		}
+		return uris;
+	}
+
+	private ResourceSet createResourceSet() {
+		final var resourceSet = new ResourceSetImpl();
+		resourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		return resourceSet;
+	}
+
+	private void validate(List<Resource> inputResources) {
 		final StringBuffer problems = new StringBuffer();
 		for (var inputResource : inputResources) {
 			final var results = OmlValidator.validate(inputResource);
@@ -188,35 +394,141 @@ public class OmlConvertApp {
 		if (problems.length()>0) {
 			throw new IllegalStateException("\n"+problems.toString());
 		}
+	}
 
-		// create the output OML catalog
-		final var outputCatalogFile = new File(outputCatalogPath);
-		createOutputCatalog(outputCatalogFile);
+	private Resource createOutputResource(ResourceSet resourceSet, Resource inputResource, String outputFolderPath) {
+		final var ontology = OmlRead.getOntology(inputResource);
+        final var uri = URI.createURI(ontology.getIri());
+        final var relativePath = uri.authority()+uri.path();
+		var outputUri = URI.createFileURI(outputFolderPath+File.separator+relativePath+"."+outputFileExtension);
+		final Resource outputResource = resourceSet.createResource(outputUri);
+		outputResource.getContents().add(ontology);
+		return outputResource;
+	}
 
-		// convert the input OML files to the output format
-		final var outputFolderPath = outputCatalogFile.getParentFile().getAbsolutePath();
-		final var outputResources = new ArrayList<Resource>();
-		for (var inputResource : inputResources) {
-			final var ontology = OmlRead.getOntology(inputResource);
-            final var uri = URI.createURI(ontology.getIri());
-            final var relativePath = uri.authority()+uri.path();
-			var outputUri = URI.createFileURI(outputFolderPath+File.separator+relativePath+"."+outputFileExtension);
-			final Resource outputResource = resourceSet.createResource(outputUri);
-			outputResource.getContents().add(ontology);
-			outputResources.add(outputResource);
+	/**
+	 * Saves the given resources (in parallel with more than one save thread), and reports the failures together
+	 * 
+	 * @param outputResources the resources to save
+	 * @throws Exception error
+	 */
+	private void save(List<Resource> outputResources) throws Exception {
+		final var staged = new ConcurrentHashMap<Path, Path>();
+		try {
+			stage(outputResources, staged);
+			commit(staged);
+		} finally {
+			discard(staged);
 		}
+	}
 
-		// save the output OML files
-		for (var outputResource : outputResources) {
-			LOGGER.info("Saving: "+outputResource.getURI());
-			outputResource.save(Collections.EMPTY_MAP);
+	/**
+	 * Saves the given resources to temporary files (in parallel with more than one save thread), and reports the
+	 * failures together
+	 * 
+	 * @param outputResources the resources to save
+	 * @param staged the temporary files to add the saved resources to, by the files they are to replace
+	 * @throws Exception error
+	 */
+	private void stage(List<Resource> outputResources, Map<Path, Path> staged) throws Exception {
+		final var failures = new ArrayList<Exception>();
+		if (saveThreads <= 1) {
+			for (var outputResource : outputResources) {
+				final var failure = stage(outputResource, staged);
+				if (failure != null) {
+					failures.add(failure);
+				}
+			}
+		} else {
+			final ExecutorService executor = Executors.newFixedThreadPool(saveThreads);
+			try {
+				final var futures = new ArrayList<Future<Exception>>();
+				for (var outputResource : outputResources) {
+					futures.add(executor.submit(() -> stage(outputResource, staged)));
+				}
+				for (var future : futures) {
+					final var failure = future.get();
+					if (failure != null) {
+						failures.add(failure);
+					}
+				}
+			} catch (ExecutionException e) {
+				throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		if (!failures.isEmpty()) {
+			final var message = new StringBuilder("Problems saving "+failures.size()+" OML files:");
+			for (var failure : failures) {
+				message.append("\n\t"+failure.getMessage());
+			}
+			final var exception = new IllegalStateException(message.toString());
+			failures.forEach(exception::addSuppressed);
+			throw exception;
 		}
+	}
 
-		LOGGER.info("=================================================================");
-		LOGGER.info("                          E N D");
-		LOGGER.info("=================================================================");
+	/**
+	 * Saves the given resource to a temporary file next to the resource's file, which it replaces once committed
+	 * (unless it has the same contents), so no partially written file is left behind
+	 * 
+	 * @param outputResource the resource to save
+	 * @param staged the temporary files to add the saved resource to, by the files they are to replace
+	 * @return the failure to save the resource, or null
+	 */
+	private Exception stage(Resource outputResource, Map<Path, Path> staged) {
+		LOGGER.info("Saving: "+outputResource.getURI());
+		final var file = Paths.get(outputResource.getURI().toFileString());
+		Path temp = null;
+		try {
+			Files.createDirectories(file.getParent());
+			temp = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+			try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(temp))) {
+				outputResource.save(out, Collections.EMPTY_MAP);
+			}
+			// an unchanged file is not replaced, so it keeps its last-modified time
+			if (!Files.exists(file) || Files.mismatch(temp, file) != -1) {
+				staged.put(file, temp);
+				temp = null;
+			}
+			return null;
+		} catch (Exception e) {
+			return new IOException("Cannot save "+outputResource.getURI()+": "+e.getMessage(), e);
+		} finally {
+			if (temp != null) {
+				delete(temp);
+			}
+		}
 	}
-	
+
+	// replaces the files with their staged temporary files
+	private static void commit(Map<Path, Path> staged) throws IOException {
+		for (var iterator = staged.entrySet().iterator(); iterator.hasNext(); ) {
+			final var entry = iterator.next();
+			try {
+				Files.move(entry.getValue(), entry.getKey(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(entry.getValue(), entry.getKey(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			iterator.remove();
+		}
+	}
+
+	// deletes the staged temporary files that are not committed
+	private void discard(Map<Path, Path> staged) {
+		staged.values().forEach(this::delete);
+		staged.clear();
+	}
+
+	private void delete(Path temp) {
+		try {
+			Files.deleteIfExists(temp);
+		} catch (IOException e) {
+			LOGGER.warn("Cannot delete "+temp+": "+e.getMessage());
+		}
+	}
+
 	// Utility methods
 
 	/**
@@ -227,21 +539,25 @@ public class OmlConvertApp {
 	 * @throws IOException exception thrown
 	 */
 	public static Collection<File> collectOMLFiles(URI inputCatalogURI) throws IOException  {
-		return OmlResolve.resolveOmlFileUris(inputCatalogURI).stream()
+		return OmlCatalogIndex.resolveOmlFileUris(inputCatalogURI).stream()
 			.map(i -> new File(i.toFileString()))
 			.collect(Collectors.toList());
 	}
 	
 	private void createOutputCatalog(final File outputCatalogFile) throws Exception {
-		LOGGER.info(("Saving: file:" + outputCatalogFile));
-		outputCatalogFile.getParentFile().mkdirs();
-        BufferedWriter bw = new BufferedWriter(new FileWriter(outputCatalogFile));
-        bw.write(
+        final String contents =
                 "<?xml version='1.0'?>\n" +
                         "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"public\">\n" +
                         "\t<rewriteURI uriStartString=\"http://\" rewritePrefix=\"./\" />\n" +
-                        "</catalog>"
-        );
+                        "</catalog>";
+		// an unchanged catalog is not written again, so it keeps its last-modified time
+		if (outputCatalogFile.exists() && contents.equals(Files.readString(outputCatalogFile.toPath()))) {
+			return;
+		}
+		LOGGER.info(("Saving: file:" + outputCatalogFile));
+		outputCatalogFile.getParentFile().mkdirs();
+        BufferedWriter bw = new BufferedWriter(new FileWriter(outputCatalogFile));
+        bw.write(contents);
         bw.close();
 	}
 
@@ -281,6 +597,50 @@ public class OmlConvertApp {
 		}
 	}
 
+	/**
+	 * The validator of batch sizes
+	 */
+	public static class BatchSize implements IParameterValidator {
+		/**
+		 * Creates a new BatchSize object
+		 */
+		public BatchSize() {
+		}
+		@Override
+		public void validate(final String name, final String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) > 0) {
+					return;
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			throw new ParameterException((("Parameter " + name) + " should be a positive number of files"));
+		}
+	}
+
+	/**
+	 * The validator of thread counts
+	 */
+	public static class ThreadCount implements IParameterValidator {
+		/**
+		 * Creates a new ThreadCount object
+		 */
+		public ThreadCount() {
+		}
+		@Override
+		public void validate(final String name, final String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) > 0) {
+					return;
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			throw new ParameterException((("Parameter " + name) + " should be a positive number of threads"));
+		}
+	}
+
 	/**
 	 * Get application version id from properties file.
 	 * @return version string from build.properties or UNKNOWN
@@ -0,0 +1,103 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl;
+import org.eclipse.emf.ecore.resource.impl.ResourceFactoryImpl;
+
+/**
+ * A factory of resources in the OML binary persistence format, whose files have the omlbin extension.
+ *
+ * The format is EMF's binary resource format, where the classes, features and resource URIs are
+ * written once per file and then referred to by number, so the files are smaller and load faster
+ * than in the OML text formats. The cross references to other resources are saved as URIs relative
+ * to the resource's URI (like the cross references of omlxmi files saved without the catalog).
+ *
+ * The format is output-only: catalogs do not resolve the omlbin extension, so the binary files are
+ * not input to the tools (nor can text files import them), but applications that register this
+ * factory can load them (along with the binary files they reference).
+ */
+public class OmlBinaryResourceFactory extends ResourceFactoryImpl {
+
+	/**
+	 * The extension of the files in the OML binary persistence format
+	 */
+	public static final String EXTENSION = "omlbin";
+
+	private static final int BUFFER_CAPACITY = 64 * 1024;
+
+	/**
+	 * Creates a new OmlBinaryResourceFactory object
+	 */
+	public OmlBinaryResourceFactory() {
+	}
+
+	/**
+	 * Registers this factory for the omlbin extension in the global resource factory registry
+	 */
+	public static void register() {
+		Resource.Factory.Registry.INSTANCE.getExtensionToFactoryMap().put(EXTENSION, new OmlBinaryResourceFactory());
+	}
+
+	@Override
+	public Resource createResource(URI uri) {
+		return new OmlBinaryResource(uri);
+	}
+
+	/**
+	 * A resource in the OML binary persistence format
+	 */
+	private static class OmlBinaryResource extends BinaryResourceImpl {
+
+		private OmlBinaryResource(URI uri) {
+			super(uri);
+		}
+
+		@Override
+		protected void doSave(OutputStream outputStream, Map<?, ?> options) throws IOException {
+			final Map<Object, Object> saveOptions = new HashMap<>();
+			saveOptions.put(OPTION_VERSION, BinaryIO.Version.VERSION_1_1);
+			saveOptions.put(OPTION_STYLE_BINARY_FLOATING_POINT, Boolean.TRUE);
+			saveOptions.put(OPTION_STYLE_DATA_CONVERTER, Boolean.TRUE);
+			saveOptions.put(OPTION_BUFFER_CAPACITY, BUFFER_CAPACITY);
+			if (options != null) {
+				saveOptions.putAll(options);
+			}
+			super.doSave(outputStream, saveOptions);
+		}
+
+		@Override
+		protected void doLoad(InputStream inputStream, Map<?, ?> options) throws IOException {
+			final Map<Object, Object> loadOptions = new HashMap<>();
+			loadOptions.put(OPTION_BUFFER_CAPACITY, BUFFER_CAPACITY);
+			if (options != null) {
+				loadOptions.putAll(options);
+			}
+			super.doLoad(inputStream, loadOptions);
+		}
+	}
+}
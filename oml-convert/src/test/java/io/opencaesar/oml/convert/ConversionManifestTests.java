@@ -0,0 +1,164 @@
+package io.opencaesar.oml.convert;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConversionManifestTests {
+
+	private static final FileTime MODIFIED = FileTime.fromMillis(1600000000000L);
+	private static final String SETTINGS = "oml true /out";
+
+	private Path folder;
+	private File catalog;
+	private URI a;
+	private URI b;
+	private URI c;
+	private Path manifestPath;
+
+	@Before
+	public void setUp() throws IOException {
+		folder = Files.createTempDirectory("oml-conversion-manifest-");
+		catalog = write("catalog.xml", "<catalog/>").toFile();
+		a = URI.createFileURI(write("a.oml", "a").toString());
+		b = URI.createFileURI(write("b.oml", "b").toString());
+		c = URI.createFileURI(write("c.oml", "c").toString());
+		manifestPath = folder.resolve("manifest/manifest.bin");
+
+		// b imports a, c imports nothing
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(uris(), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		manifest.record(a, output(a), Collections.emptyList());
+		manifest.record(b, output(b), Arrays.asList(a));
+		manifest.record(c, output(c), Collections.emptyList());
+		manifest.save();
+	}
+
+	@After
+	public void tearDown() {
+		for (String child : new String[] { "manifest", "out" }) {
+			File[] files = folder.resolve(child).toFile().listFiles();
+			if (files != null) {
+				for (File file : files) {
+					file.delete();
+				}
+			}
+		}
+		for (File file : folder.toFile().listFiles()) {
+			file.delete();
+		}
+		folder.toFile().delete();
+	}
+
+	@Test
+	public void testUnchangedRun() throws IOException {
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Collections.emptyList(), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		Assert.assertEquals(Collections.emptyList(), manifest.removeObsoleteOutputs());
+	}
+
+	@Test
+	public void testModifiedInput() throws IOException {
+		write("a.oml", "a2");
+		Assert.assertEquals(Arrays.asList(a, b), ConversionManifest.load(manifestPath).getStaleUris(SETTINGS, catalog, uris()));
+	}
+
+	@Test
+	public void testDeletedInput() throws IOException {
+		Files.delete(folder.resolve("c.oml"));
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Collections.emptyList(), manifest.getStaleUris(SETTINGS, catalog, Arrays.asList(a, b)));
+		Assert.assertEquals(Arrays.asList(new File(output(c).toFileString())), manifest.removeObsoleteOutputs());
+		manifest.save();
+		manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Collections.emptyList(), manifest.getStaleUris(SETTINGS, catalog, Arrays.asList(a, b)));
+		Assert.assertEquals(Collections.emptyList(), manifest.removeObsoleteOutputs());
+	}
+
+	@Test
+	public void testRenamedIri() throws IOException {
+		// the IRI of a changed, so it is converted to another output file
+		write("a.oml", "a2");
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Arrays.asList(a, b), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		manifest.record(a, output("a2.oml"), Collections.emptyList());
+		manifest.record(b, output(b), Arrays.asList(a));
+		Assert.assertEquals(Arrays.asList(new File(output(a).toFileString())), manifest.removeObsoleteOutputs());
+		manifest.save();
+		manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Collections.emptyList(), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		Assert.assertEquals(Collections.emptyList(), manifest.removeObsoleteOutputs());
+	}
+
+	@Test
+	public void testStaleInputNotConvertedKeepsOutput() throws IOException {
+		write("a.oml", "a2");
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Arrays.asList(a, b), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		Assert.assertEquals(Collections.emptyList(), manifest.removeObsoleteOutputs());
+	}
+
+	@Test
+	public void testMissingOutput() throws IOException {
+		Files.delete(Path.of(output(c).toFileString()));
+		Assert.assertEquals(Arrays.asList(c), ConversionManifest.load(manifestPath).getStaleUris(SETTINGS, catalog, uris()));
+	}
+
+	@Test
+	public void testChangedSettings() throws IOException {
+		Assert.assertEquals(uris(), ConversionManifest.load(manifestPath).getStaleUris("omlxmi true /out", catalog, uris()));
+	}
+
+	@Test
+	public void testChangedCatalog() throws IOException {
+		write("catalog.xml", "<catalog></catalog>");
+		Assert.assertEquals(uris(), ConversionManifest.load(manifestPath).getStaleUris(SETTINGS, catalog, uris()));
+	}
+
+	@Test
+	public void testStaleInputStaysStaleUntilConverted() throws IOException {
+		write("c.oml", "c2");
+		ConversionManifest manifest = ConversionManifest.load(manifestPath);
+		Assert.assertEquals(Arrays.asList(c), manifest.getStaleUris(SETTINGS, catalog, uris()));
+		manifest.save();
+		Assert.assertEquals(Arrays.asList(c), ConversionManifest.load(manifestPath).getStaleUris(SETTINGS, catalog, uris()));
+	}
+
+	private List<URI> uris() {
+		return Arrays.asList(a, b, c);
+	}
+
+	// the output file of the given input file, which exists
+	private URI output(URI uri) throws IOException {
+		return output(uri.lastSegment());
+	}
+
+	// the output file of an input file of the given name, which exists
+	private URI output(String name) throws IOException {
+		Path output = folder.resolve("out").resolve(name + "xmi");
+		if (!Files.exists(output)) {
+			Files.createDirectories(output.getParent());
+			Files.write(output, new byte[0]);
+		}
+		return URI.createFileURI(output.toString());
+	}
+
+	private Path write(String name, String contents) throws IOException {
+		Path file = folder.resolve(name);
+		Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, MODIFIED);
+		return file;
+	}
+}
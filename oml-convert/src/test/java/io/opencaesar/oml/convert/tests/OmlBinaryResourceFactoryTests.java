@@ -0,0 +1,74 @@
+package io.opencaesar.oml.convert.tests;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.resource.OmlBinaryResourceFactory;
+import io.opencaesar.oml.validate.tests.OmlTestCatalog;
+
+public class OmlBinaryResourceFactoryTests {
+
+	@BeforeClass
+	public static void setUp() {
+		OmlStandaloneSetup.doSetup();
+		OmlBinaryResourceFactory.register();
+	}
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-binary-", OmlTestCatalog.valid());
+		try {
+			// save a and b (which extends a) in the binary format, next to their text files
+			List<URI> uris = OmlTestCatalog.getUris(folder, Arrays.asList("a", "b"));
+			ResourceSet resourceSet = new ResourceSetImpl();
+			List<Resource> texts = new ArrayList<>();
+			for (URI uri : uris) {
+				texts.add(resourceSet.getResource(uri, true));
+			}
+			EcoreUtil.resolveAll(resourceSet);
+			List<URI> binaryUris = new ArrayList<>();
+			for (Resource text : texts) {
+				URI binaryUri = text.getURI().trimFileExtension().appendFileExtension(OmlBinaryResourceFactory.EXTENSION);
+				Resource binary = resourceSet.createResource(binaryUri);
+				binary.getContents().addAll(text.getContents());
+				binaryUris.add(binaryUri);
+			}
+			for (URI binaryUri : binaryUris) {
+				resourceSet.getResource(binaryUri, false).save(Collections.emptyMap());
+			}
+
+			// b loaded alone resolves its references to a in the binary file of a
+			ResourceSet binarySet = new ResourceSetImpl();
+			Resource b = binarySet.getResource(binaryUris.get(1), true);
+			List<EObject> references = new ArrayList<>();
+			b.getAllContents().forEachRemaining(o -> references.addAll(o.eCrossReferences()));
+			Assert.assertFalse(references.isEmpty());
+			for (EObject reference : references) {
+				Assert.assertFalse(reference.eIsProxy());
+				Assert.assertTrue(reference.eResource() == b || binaryUris.get(0).equals(reference.eResource().getURI()));
+			}
+			Resource a = binarySet.getResource(binaryUris.get(0), false);
+			Assert.assertNotNull(a);
+
+			// a has the same contents as its text file
+			Resource text = new ResourceSetImpl().getResource(uris.get(0), true);
+			Assert.assertTrue(EcoreUtil.equals(text.getContents(), a.getContents()));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package io.opencaesar.oml.convert.tests;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beust.jcommander.JCommander;
+
+import io.opencaesar.oml.convert.OmlConvertApp;
+import io.opencaesar.oml.validate.tests.OmlTestCatalog;
+
+public class OmlConvertTests {
+
+	private static final String[] EXTENSIONS = { "oml", "omlxmi", "omljson", "omlbin" };
+
+	@Test
+	public void testParallelSaveMatchesSequentialSave() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-convert-", files());
+		try {
+			for (String extension : EXTENSIONS) {
+				Path sequential = convert(folder, "sequential-" + extension, extension, "-s", "1");
+				Path parallel = convert(folder, "parallel-" + extension, extension, "-s", "4");
+				assertSameFiles(extension, sequential, parallel);
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testBatchConversionMatchesSinglePass() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-convert-", files());
+		try {
+			for (String extension : EXTENSIONS) {
+				// with one file per batch, the import closure of most batches spills over files converted by other batches
+				Path single = convert(folder, "single-" + extension, extension);
+				assertSameFiles(extension, single, convert(folder, "batch1-" + extension, extension, "-b", "1"));
+				assertSameFiles(extension, single, convert(folder, "batch2-" + extension, extension, "-b", "2", "-s", "4"));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testInvalidBatchLeavesOutputUnchanged() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-convert-", files());
+		try {
+			Path output = convert(folder, "output", "oml", "-b", "1");
+			Map<String, byte[]> expected = OmlTestCatalog.read(output);
+
+			// a changed file converted by an early batch, and an invalid file converted by the last batch
+			OmlTestCatalog.write(folder, "a", OmlTestCatalog.A.replace("concept C", "concept C\n\n\tconcept F"));
+			OmlTestCatalog.write(folder, "z", "description <http://example.com/z#> as z {\n\n\tuses <http://example.com/a#> as a\n\n\tinstance k : a:Missing\n\n}\n");
+			try {
+				convert(folder, "output", "oml", "-b", "1");
+				Assert.fail("the invalid file is converted");
+			} catch (IllegalStateException e) {
+				// expected
+			}
+			Map<String, byte[]> actual = OmlTestCatalog.read(output);
+			Assert.assertEquals(expected.keySet(), actual.keySet());
+			for (String path : expected.keySet()) {
+				Assert.assertArrayEquals(path, expected.get(path), actual.get(path));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	// the valid OML files, with a description e of descriptions
+	private static Map<String, String> files() {
+		Map<String, String> files = OmlTestCatalog.valid();
+		files.put("e", OmlTestCatalog.E);
+		return files;
+	}
+
+	// converts the catalog of the given folder to an output folder of the given name, and returns it
+	private static Path convert(Path folder, String output, String extension, String... options) throws Exception {
+		Path outputFolder = folder.resolve(output);
+		OmlConvertApp app = new OmlConvertApp();
+		List<String> args = new ArrayList<>(Arrays.asList(
+				"-i", folder.resolve("catalog.xml").toFile().getAbsolutePath(),
+				"-o", outputFolder.resolve("catalog.xml").toFile().getAbsolutePath(),
+				"-f", extension));
+		args.addAll(Arrays.asList(options));
+		JCommander.newBuilder().addObject(app).build().parse(args.toArray(new String[0]));
+		app.run();
+		return outputFolder;
+	}
+
+	private static void assertSameFiles(String extension, Path expectedFolder, Path actualFolder) throws Exception {
+		Map<String, byte[]> expected = OmlTestCatalog.read(expectedFolder);
+		Map<String, byte[]> actual = OmlTestCatalog.read(actualFolder);
+		Assert.assertEquals(extension, expected.keySet(), actual.keySet());
+		// the output catalog and one file per input file
+		Assert.assertEquals(extension, 6, expected.size());
+		for (String path : expected.keySet()) {
+			Assert.assertArrayEquals(extension + ": " + path, expected.get(path), actual.get(path));
+		}
+	}
+}
@@ -26,12 +26,15 @@ import java.util.List;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.RegularFileProperty;
 import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
 import org.gradle.api.tasks.TaskExecutionException;
 import org.gradle.work.Incremental;
@@ -75,12 +78,31 @@ public abstract class OmlMergeTask extends DefaultTask {
    public abstract ListProperty<File> getInputCatalogPaths();
 
 	/**
-	 * The path to output OML folder where a basic OML catalog will be created.
+	 * The path to output OML folder where a basic OML catalog will be created (required unless an output zip path is set).
 	 * 
 	 * @return Directory Property
 	 */
     @OutputDirectory
+    @Optional
     public abstract DirectoryProperty getOutputCatalogFolder();
+
+	/**
+	 * The path to an output OML zip archive to write the merged files to instead of an output folder.
+	 * 
+	 * @return RegularFile Property
+	 */
+    @OutputFile
+    @Optional
+    public abstract RegularFileProperty getOutputZipPath();
+
+	/**
+	 * The compression level of the output zip archive (options: stored, 0-9, default: 6).
+	 * 
+	 * @return String Property
+	 */
+    @Input
+    @Optional
+	public abstract Property<String> getCompressionLevel();
     
 	/**
 	 * Whether to generate a catalog file in the output folder path.
@@ -91,6 +113,51 @@ public abstract class OmlMergeTask extends DefaultTask {
     @Input
     public abstract Property<Boolean> getGenerateOutputCatalog();
 
+	/**
+	 * The number of threads used to scan and hash the inputs.
+	 * 
+	 * @return Integer Property
+	 */
+    @Input
+    @Optional
+	public abstract Property<Integer> getThreads();
+
+	/**
+	 * The path to a file caching the hashes of the inputs between runs.
+	 * 
+	 * @return File Property
+	 */
+    @Internal
+    @Optional
+	public abstract Property<File> getHashCache();
+
+	/**
+	 * Whether to only write the output files that changed since the previous merge and delete the stale ones.
+	 * 
+	 * @return Boolean Property
+	 */
+    @Input
+    @Optional
+	public abstract Property<Boolean> getIncremental();
+
+	/**
+	 * How to write the output files (options: copy, hardlink, symlink, reflink-if-available, default: copy).
+	 * 
+	 * @return String Property
+	 */
+    @Input
+    @Optional
+	public abstract Property<String> getOutputMode();
+
+	/**
+	 * Whether to stop at the first difference found, without comparing the other files or writing any output.
+	 * 
+	 * @return Boolean Property
+	 */
+    @Input
+    @Optional
+	public abstract Property<Boolean> getFailFast();
+
 	/**
 	 * Whether to show debug logging statements.
 	 * 
@@ -145,11 +212,37 @@ public abstract class OmlMergeTask extends DefaultTask {
 			args.add("-o");
 			args.add(getOutputCatalogFolder().get().getAsFile().getAbsolutePath());
 		}
+		if (getOutputZipPath().isPresent()) {
+			args.add("-a");
+			args.add(getOutputZipPath().get().getAsFile().getAbsolutePath());
+		}
+		if (getCompressionLevel().isPresent()) {
+			args.add("-l");
+			args.add(getCompressionLevel().get());
+		}
 		if (getGenerateOutputCatalog().isPresent()) {
 			if (getGenerateOutputCatalog().get()) {
 				args.add("-g");
 			}
 		}
+		if (getThreads().isPresent()) {
+			args.add("-t");
+			args.add(getThreads().get().toString());
+		}
+		if (getHashCache().isPresent()) {
+			args.add("-k");
+			args.add(getHashCache().get().getAbsolutePath());
+		}
+		if (getIncremental().isPresent() && getIncremental().get()) {
+			args.add("-n");
+		}
+		if (getOutputMode().isPresent()) {
+			args.add("-m");
+			args.add(getOutputMode().get());
+		}
+		if (getFailFast().isPresent() && getFailFast().get()) {
+			args.add("-s");
+		}
 		if (getDebug().isPresent() && getDebug().get()) {
 			args.add("-d");
 		}
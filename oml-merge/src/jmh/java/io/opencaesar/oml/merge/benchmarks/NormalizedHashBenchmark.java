@@ -0,0 +1,131 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge.benchmarks;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.opencaesar.oml.merge.OmlMergeApp;
+
+/**
+ * Compares the throughput of {@link OmlMergeApp#normalizedHash(InputStream)} with the
+ * byte-at-a-time implementation it replaced.
+ * 
+ * Run with: ./gradlew oml-merge:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NormalizedHashBenchmark {
+
+	/**
+	 * The line separator used in the hashed content
+	 */
+	@Param({ "\n", "\r\n" })
+	public String lineSeparator;
+
+	/**
+	 * The size of the hashed content in KB
+	 */
+	@Param({ "16", "1024" })
+	public int sizeInKb;
+
+	private byte[] content;
+
+	/**
+	 * Creates a new NormalizedHashBenchmark object
+	 */
+	public NormalizedHashBenchmark() {
+	}
+
+	/**
+	 * Creates OML-like content of the requested size
+	 */
+	@Setup
+	public void setUp() {
+		final StringBuilder sb = new StringBuilder();
+		int i = 0;
+		while (sb.length() < sizeInKb * 1024) {
+			sb.append("\tconcept Concept").append(i).append(" < base:Thing [").append(lineSeparator);
+			sb.append("\t\trestricts all relation base:hasPart to Concept").append(i + 1).append(lineSeparator);
+			sb.append("\t]").append(lineSeparator);
+			i++;
+		}
+		content = sb.toString().getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Hashes the content with the current implementation
+	 * 
+	 * @return the hash
+	 * @throws IOException error
+	 */
+	@Benchmark
+	public byte[] blockBased() throws IOException {
+		return OmlMergeApp.normalizedHash(new ByteArrayInputStream(content));
+	}
+
+	/**
+	 * Hashes the content with the previous byte-at-a-time implementation
+	 * 
+	 * @return the hash
+	 * @throws IOException error
+	 */
+	@Benchmark
+	public byte[] byteAtATime() throws IOException {
+		try (BufferedInputStream bis = new BufferedInputStream(new ByteArrayInputStream(content))) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			int b;
+			while ((b = bis.read()) != -1) {
+				if (b == '\r') {
+					b = '\n';
+					bis.mark(1);
+					if (bis.read() != '\n') {
+						bis.reset();
+					}
+				}
+				digest.update((byte) b);
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+	}
+}
@@ -0,0 +1,370 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+import io.opencaesar.oml.util.OmlConstants;
+
+/**
+ * A compact table of the OML files found in the inputs of a merge.
+ *
+ * Files are identified by their index in input order, and their attributes are kept in parallel
+ * primitive arrays: the node of their relative path (without extension) in a shared {@link PathTrie},
+ * their extension, their input, and the size and CRC-32 of zip entries. Normalized hashes are only
+ * computed when needed and are packed in a single byte array. The files with the same relative path
+ * form a group chained in input order, whose first file is the one that gets merged.
+ */
+final class FileTable {
+
+    private static final int HASH_LENGTH = 32;
+    private static final List<String> EXTENSIONS = Arrays.asList(OmlConstants.OML_EXTENSIONS);
+
+    private final PathTrie paths = new PathTrie();
+    private final List<Input> inputs = new ArrayList<>();
+
+    private int fileCount;
+    private int[] nodes;
+    private byte[] extensions;
+    private int[] fileInputs;
+    private long[] sizes;
+    private int[] crcs;
+    private int[] nextFiles;
+    private int[] groups;
+    private byte[] hashes;
+    private byte[] hashed;
+
+    /**
+     * Adds an input to this table
+     *
+     * @param name the name of the input, as reported in the differences
+     * @param archive the path of the input zip archive, or null for a folder input
+     * @return the added input
+     */
+    Input addInput(String name, Path archive) {
+        Input input = new Input(name, archive);
+        inputs.add(input);
+        return input;
+    }
+
+    /**
+     * Gathers the files added to the inputs in input order and groups them by relative path
+     */
+    void build() {
+        fileCount = inputs.stream().mapToInt(i -> i.count).sum();
+        nodes = new int[fileCount];
+        extensions = new byte[fileCount];
+        fileInputs = new int[fileCount];
+        sizes = new long[fileCount];
+        crcs = new int[fileCount];
+        int f = 0;
+        for (int i = 0; i < inputs.size(); i++) {
+            Input input = inputs.get(i);
+            System.arraycopy(input.nodes, 0, nodes, f, input.count);
+            System.arraycopy(input.extensions, 0, extensions, f, input.count);
+            Arrays.fill(fileInputs, f, f + input.count, i);
+            System.arraycopy(input.sizes, 0, sizes, f, input.count);
+            System.arraycopy(input.crcs, 0, crcs, f, input.count);
+            f += input.count;
+            input.release();
+        }
+
+        // chain the files of each node in input order
+        int[] first = new int[paths.size()];
+        int[] last = new int[paths.size()];
+        Arrays.fill(first, -1);
+        nextFiles = new int[fileCount];
+        Arrays.fill(nextFiles, -1);
+        int groupCount = 0;
+        for (f = 0; f < fileCount; f++) {
+            int node = nodes[f];
+            if (first[node] == -1) {
+                first[node] = f;
+                groupCount++;
+            } else {
+                nextFiles[last[node]] = f;
+            }
+            last[node] = f;
+        }
+        groups = new int[groupCount];
+        int g = 0;
+        for (f = 0; f < fileCount; f++) {
+            if (first[nodes[f]] == f) {
+                groups[g++] = f;
+            }
+        }
+
+        hashes = new byte[fileCount * HASH_LENGTH];
+        hashed = new byte[fileCount];
+    }
+
+    /**
+     * Returns the first file of each group of files with the same relative path
+     *
+     * @return array of files
+     */
+    int[] getGroups() {
+        return groups;
+    }
+
+    /**
+     * Returns the next file with the same relative path as the given file, or -1 if there is none
+     *
+     * @param file a file
+     * @return the next file in the group
+     */
+    int getNextFile(int file) {
+        return nextFiles[file];
+    }
+
+    /**
+     * Returns the relative path of the given file without its extension, with segments separated by '/'
+     *
+     * @param file a file
+     * @return the relative path
+     */
+    String getRelativePath(int file) {
+        return paths.toString(nodes[file]);
+    }
+
+    /**
+     * Returns the extension of the given file
+     *
+     * @param file a file
+     * @return the extension
+     */
+    String getExtension(int file) {
+        return EXTENSIONS.get(extensions[file]);
+    }
+
+    /**
+     * Returns the relative path of the given file with its extension
+     *
+     * @param file a file
+     * @return the relative path
+     */
+    String getRelativeFile(int file) {
+        return getRelativePath(file) + "." + getExtension(file);
+    }
+
+    /**
+     * Returns the path of the given file in its input
+     *
+     * @param file a file
+     * @return the path
+     */
+    Path getPath(int file) {
+        return inputs.get(fileInputs[file]).top.resolve(getRelativeFile(file));
+    }
+
+    /**
+     * Returns the size of the given file if it is a zip entry, or -1 for a file in a folder
+     *
+     * @param file a file
+     * @return the size
+     */
+    long getSize(int file) {
+        return sizes[file];
+    }
+
+    /**
+     * Returns the CRC-32 of the given file if it is a zip entry
+     *
+     * @param file a file
+     * @return the CRC-32
+     */
+    int getCrc(int file) {
+        return crcs[file];
+    }
+
+    /**
+     * Returns the name of the input of the given file
+     *
+     * @param file a file
+     * @return the input name
+     */
+    String getInputName(int file) {
+        return inputs.get(fileInputs[file]).name;
+    }
+
+    /**
+     * Returns the normalized hash of the given file, computing it if needed. Each file must only be
+     * hashed by one thread at a time (the files of a group are compared by a single task).
+     *
+     * @param file a file
+     * @param hashCache a hash cache or null
+     * @return the hash
+     * @throws IOException error
+     */
+    byte[] getHash(int file, HashCache hashCache) throws IOException {
+        int offset = file * HASH_LENGTH;
+        if (hashed[file] == 0) {
+            byte[] hash;
+            Input input = inputs.get(fileInputs[file]);
+            if (hashCache == null) {
+                try (InputStream is = Files.newInputStream(getPath(file))) {
+                    hash = OmlMergeApp.normalizedHash(is);
+                }
+            } else if (input.archive == null) {
+                hash = hashCache.getFileHash(getPath(file));
+            } else {
+                hash = hashCache.getEntryHash(input.archive, getRelativeFile(file), getPath(file));
+            }
+            System.arraycopy(hash, 0, hashes, offset, HASH_LENGTH);
+            hashed[file] = 1;
+        }
+        return Arrays.copyOfRange(hashes, offset, offset + HASH_LENGTH);
+    }
+
+    /**
+     * Returns whether the two given files have the same contents
+     *
+     * @param file1 a file
+     * @param file2 another file
+     * @param hashCache a hash cache or null
+     * @return whether the files have the same contents
+     * @throws IOException error
+     */
+    boolean hasSameContents(int file1, int file2, HashCache hashCache) throws IOException {
+        if (extensions[file1] != extensions[file2]) {
+            return false;
+        }
+        // zip entries with the same size and CRC-32 are identical without inflating them
+        if (sizes[file1] != -1 && sizes[file1] == sizes[file2] && crcs[file1] == crcs[file2]) {
+            return true;
+        }
+        getHash(file1, hashCache);
+        getHash(file2, hashCache);
+        return Arrays.equals(hashes, file1 * HASH_LENGTH, (file1 + 1) * HASH_LENGTH, hashes, file2 * HASH_LENGTH, (file2 + 1) * HASH_LENGTH);
+    }
+
+    /**
+     * Compares the files of the group of the given file to that file, and returns a unique file
+     * describing the group if some of them are different, or null otherwise.
+     *
+     * @param first the first file of a group
+     * @param hashCache a hash cache or null
+     * @return a unique file or null
+     * @throws IOException error
+     */
+    OmlMergeApp.UniqueFile compare(int first, HashCache hashCache) throws IOException {
+        BitSet equivalentInputs = null;
+        BitSet differentInputs = null;
+        for (int f = nextFiles[first]; f != -1; f = nextFiles[f]) {
+            if (hasSameContents(first, f, hashCache)) {
+                if (equivalentInputs == null) {
+                    equivalentInputs = new BitSet(inputs.size());
+                }
+                equivalentInputs.set(fileInputs[f]);
+            } else {
+                if (differentInputs == null) {
+                    differentInputs = new BitSet(inputs.size());
+                }
+                differentInputs.set(fileInputs[f]);
+            }
+        }
+        if (differentInputs == null) {
+            return null;
+        }
+        List<String> equivalentNames = new ArrayList<>();
+        equivalentNames.add(getInputName(first));
+        if (equivalentInputs != null) {
+            equivalentInputs.stream().forEach(i -> equivalentNames.add(inputs.get(i).name));
+        }
+        List<String> differentNames = new ArrayList<>();
+        differentInputs.stream().forEach(i -> differentNames.add(inputs.get(i).name));
+        return new OmlMergeApp.UniqueFile(getRelativePath(first), getExtension(first), equivalentNames, differentNames);
+    }
+
+    /**
+     * An input of the merge, which collects its files while it is scanned
+     */
+    final class Input {
+        private final String name;
+        private final Path archive;
+        private Path top;
+        private int count;
+        private int[] nodes = new int[64];
+        private byte[] extensions = new byte[64];
+        private long[] sizes = new long[64];
+        private int[] crcs = new int[64];
+
+        private Input(String name, Path archive) {
+            this.name = name;
+            this.archive = archive;
+        }
+
+        /**
+         * Sets the folder of this input (the root of its zip file system for a zip input) before
+         * its files are added
+         *
+         * @param top the path
+         */
+        void setTop(Path top) {
+            this.top = top;
+        }
+
+        /**
+         * Adds a file found in this input
+         *
+         * @param file the file (in the input's folder or zip file system)
+         * @param extension the file extension
+         * @param size the size of a zip entry, or -1 for a file in a folder
+         * @param crc the CRC-32 of a zip entry
+         */
+        void add(Path file, String extension, long size, int crc) {
+            String name = file.getFileName().toString();
+            Path relativePath = top.relativize(file.resolveSibling(name.substring(0, name.length() - 1 - extension.length())));
+            if (count == nodes.length) {
+                nodes = Arrays.copyOf(nodes, count * 2);
+                extensions = Arrays.copyOf(extensions, count * 2);
+                sizes = Arrays.copyOf(sizes, count * 2);
+                crcs = Arrays.copyOf(crcs, count * 2);
+            }
+            nodes[count] = paths.intern(relativePath);
+            extensions[count] = (byte) EXTENSIONS.indexOf(extension);
+            sizes[count] = size;
+            crcs[count] = crc;
+            count++;
+        }
+
+        /**
+         * Returns the path of the zip archive of this input, or null for a folder input
+         *
+         * @return the path
+         */
+        Path getArchive() {
+            return archive;
+        }
+
+        private void release() {
+            nodes = null;
+            extensions = null;
+            sizes = null;
+            crcs = null;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A persistent cache of the normalized hashes of merged files.
+ *
+ * Files in folders are keyed by their absolute path, size and last-modified time. Entries of
+ * zip archives are keyed by the SHA-256 of their archive and their name in it, so a copy of the
+ * same archive at another path reuses them. Archive hashes are themselves keyed by the archive's
+ * absolute path, size and last-modified time.
+ *
+ * The cache is saved under a lock file (and a lock shared by the caches of this JVM with the same
+ * file, since file locks are held per process) and atomically replaced, so concurrent builds sharing
+ * it never see a partially written cache, and their entries are merged rather than lost. A file is
+ * only cached when its key is the same before and after hashing it, so a file changed while it is
+ * hashed is not cached with a hash of other contents.
+ */
+class HashCache {
+
+    private static final int MAGIC = 0x4F4D4C48; // "OMLH"
+    private static final int VERSION = 1;
+    private static final int HASH_LENGTH = 32;
+
+    private static final Logger LOGGER = Logger.getLogger(HashCache.class);
+
+    // the locks of the cache files saved by this JVM, by canonical path
+    private static final Map<Path, Object> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path path;
+    private final Map<FileKey, byte[]> files = new ConcurrentHashMap<>();
+    private final Map<FileKey, byte[]> archives = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, byte[]>> entries = new ConcurrentHashMap<>();
+    private final Map<FileKey, byte[]> archiveHashes = new ConcurrentHashMap<>();
+    private volatile boolean modified;
+
+    private HashCache(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Loads the cache at the given path, or creates an empty one if there is no (readable) cache there
+     *
+     * @param path the path of the cache file
+     * @return the hash cache
+     */
+    public static HashCache load(Path path) {
+        HashCache cache = new HashCache(path);
+        if (Files.exists(path)) {
+            try {
+                cache.read(path);
+            } catch (IOException e) {
+                LOGGER.warn("Ignoring unreadable hash cache " + path + ": " + e.getMessage());
+                cache.files.clear();
+                cache.archives.clear();
+                cache.entries.clear();
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Returns the normalized hash of the given file in a folder
+     *
+     * @param file the file
+     * @return the normalized hash
+     * @throws IOException error
+     */
+    public byte[] getFileHash(Path file) throws IOException {
+        FileKey key = FileKey.of(file);
+        byte[] hash = files.get(key);
+        if (hash == null) {
+            hash = normalizedHash(file);
+            if (key.isCurrent()) {
+                files.put(key, hash);
+                modified = true;
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Returns the normalized hash of the given entry of a zip archive
+     *
+     * @param archive the path of the zip archive
+     * @param name the name of the entry in the archive
+     * @param entry the path of the entry in the archive's file system
+     * @return the normalized hash
+     * @throws IOException error
+     */
+    public byte[] getEntryHash(Path archive, String name, Path entry) throws IOException {
+        // the archive is hashed again when its key changed, even during a merge
+        FileKey key = FileKey.of(archive);
+        Map<String, byte[]> hashes = entries.computeIfAbsent(HexFormat.of().formatHex(getArchiveHash(key, archive)), k -> new ConcurrentHashMap<>());
+        byte[] hash = hashes.get(name);
+        if (hash == null) {
+            hash = normalizedHash(entry);
+            if (key.isCurrent()) {
+                hashes.put(name, hash);
+                modified = true;
+            }
+        }
+        return hash;
+    }
+
+    private byte[] getArchiveHash(FileKey key, Path archive) throws IOException {
+        try {
+            return archiveHashes.computeIfAbsent(key, k -> {
+                try {
+                    byte[] hash = archives.get(k);
+                    if (hash == null) {
+                        hash = hash(archive);
+                        if (k.isCurrent()) {
+                            archives.put(k, hash);
+                            modified = true;
+                        }
+                    }
+                    return hash;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Saves the new entries of this cache, merging them with those saved concurrently by other builds
+     *
+     * @throws IOException error
+     */
+    public void save() throws IOException {
+        if (!modified) {
+            return;
+        }
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path lockFile = parent.resolve(path.getFileName() + ".lock");
+        Object lock = LOCKS.computeIfAbsent(parent.toRealPath().resolve(lockFile.getFileName()), k -> new Object());
+        synchronized (lock) {
+            saveLocked(lockFile, parent);
+        }
+        modified = false;
+    }
+
+    private void saveLocked(Path lockFile, Path parent) throws IOException {
+        try (FileChannel channel = FileChannel.open(lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            // the lock is released when the channel is closed
+            channel.lock();
+
+            // keep the entries saved by others since this cache was loaded
+            HashCache saved = load(path);
+            saved.files.forEach(files::putIfAbsent);
+            saved.archives.forEach(archives::putIfAbsent);
+            saved.entries.forEach((archive, hashes) -> entries.computeIfAbsent(archive, k -> new ConcurrentHashMap<>()).putAll(hashes));
+
+            // forget the files that changed or no longer exist, and the archives nothing refers to
+            files.keySet().removeIf(key -> !key.isCurrent());
+            archives.keySet().removeIf(key -> !key.isCurrent());
+            entries.keySet().retainAll(archives.values().stream().map(h -> HexFormat.of().formatHex(h)).toList());
+
+            Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+            try {
+                write(temp);
+                try {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+    }
+
+    private void read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("unsupported format");
+            }
+            int fileCount = in.readInt();
+            for (int i = 0; i < fileCount; i++) {
+                files.put(FileKey.read(in), readHash(in));
+            }
+            int archiveCount = in.readInt();
+            for (int i = 0; i < archiveCount; i++) {
+                archives.put(FileKey.read(in), readHash(in));
+            }
+            int tableCount = in.readInt();
+            for (int i = 0; i < tableCount; i++) {
+                String archive = HexFormat.of().formatHex(readHash(in));
+                Map<String, byte[]> hashes = new ConcurrentHashMap<>();
+                int entryCount = in.readInt();
+                for (int j = 0; j < entryCount; j++) {
+                    hashes.put(in.readUTF(), readHash(in));
+                }
+                entries.put(archive, hashes);
+            }
+        }
+    }
+
+    private void write(Path file) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(files.size());
+            for (Map.Entry<FileKey, byte[]> e : files.entrySet()) {
+                e.getKey().write(out);
+                out.write(e.getValue());
+            }
+            out.writeInt(archives.size());
+            for (Map.Entry<FileKey, byte[]> e : archives.entrySet()) {
+                e.getKey().write(out);
+                out.write(e.getValue());
+            }
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Map<String, byte[]>> e : entries.entrySet()) {
+                out.write(HexFormat.of().parseHex(e.getKey()));
+                out.writeInt(e.getValue().size());
+                for (Map.Entry<String, byte[]> entry : e.getValue().entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.write(entry.getValue());
+                }
+            }
+        }
+    }
+
+    private static byte[] readHash(DataInputStream in) throws IOException {
+        byte[] hash = new byte[HASH_LENGTH];
+        in.readFully(hash);
+        return hash;
+    }
+
+    private static byte[] normalizedHash(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            return OmlMergeApp.normalizedHash(is);
+        }
+    }
+
+    private static byte[] hash(Path file) throws IOException {
+        try (InputStream is = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int len;
+            while ((len = is.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * The key of a file: its absolute path, size and last-modified time
+     */
+    private static final class FileKey {
+        private final String path;
+        private final long size;
+        private final long lastModified;
+
+        private FileKey(String path, long size, long lastModified) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        private static FileKey of(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new FileKey(file.toAbsolutePath().toString(), attributes.size(), attributes.lastModifiedTime().toMillis());
+        }
+
+        private static FileKey read(DataInputStream in) throws IOException {
+            return new FileKey(in.readUTF(), in.readLong(), in.readLong());
+        }
+
+        private void write(DataOutputStream out) throws IOException {
+            out.writeUTF(path);
+            out.writeLong(size);
+            out.writeLong(lastModified);
+        }
+
+        private boolean isCurrent() {
+            try {
+                return equals(of(Path.of(path)));
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FileKey)) {
+                return false;
+            }
+            FileKey other = (FileKey) o;
+            return size == other.size && lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, lastModified);
+        }
+    }
+}
@@ -18,31 +18,44 @@
  */
 package io.opencaesar.oml.merge;
 
-import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
+import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
-import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import org.apache.log4j.Appender;
 import org.apache.log4j.AppenderSkeleton;
@@ -85,33 +98,87 @@ public class OmlMergeApp {
 
     @Parameter(
             names = {"--output-folder-path", "-o"},
-            description = "Path to output OML folder where a basic OML catalog will be created (Required)",
+            description = "Path to output OML folder where a basic OML catalog will be created (Required unless an output zip path is given)",
             validateWith = OutputFilePath.class,
-            required = true,
             order = 4)
     private String outputFolderPath = null;
 
     @Parameter(
-            names = {"--generate-output-catalog", "-g"},
-            description = "Whether to generate a catalog file in the output folder path (Not Required)",
+            names = {"--output-zip-path", "-a"},
+            description = "Path to an output OML zip archive to write the merged files to instead of an output folder (Not Required)",
+            validateWith = OutputZipPath.class,
             order = 5)
+    private String outputZipPath = null;
+
+    @Parameter(
+            names = {"--compression-level", "-l"},
+            description = "Compression level of the output zip archive (options: stored, 0-9, default: 6). Stored entries are not compressed at all.",
+            validateWith = CompressionLevel.class,
+            order = 6)
+    private String compressionLevel = "6";
+
+    @Parameter(
+            names = {"--generate-output-catalog", "-g"},
+            description = "Whether to generate a catalog file in the output folder path or zip archive (Not Required)",
+            order = 7)
     private boolean generateOutputCatalog;
 
+    @Parameter(
+            names = {"--threads", "-t"},
+            description = "Number of threads used to scan and hash the inputs (Not Required, default 1)",
+            validateWith = ThreadCount.class,
+            order = 8)
+    private int threads = 1;
+
+    @Parameter(
+            names = {"--hash-cache", "-k"},
+            description = "Path to a file caching the hashes of the inputs between runs (Not Required)",
+            order = 9)
+    private String hashCachePath = null;
+
+    @Parameter(
+            names = {"--incremental", "-n"},
+            description = "Whether to only write the output files that changed since the previous merge and delete the stale ones (Not Required)",
+            order = 10)
+    private boolean incremental;
+
+    @Parameter(
+            names = {"--output-mode", "-m"},
+            description = "How to write the output files (options: copy, hardlink, symlink, reflink-if-available, default: copy). The modes other than copy fall back to copying when they are not possible.",
+            validateWith = OutputMode.class,
+            order = 11)
+    private String outputMode = OutputMode.COPY;
+
+    @Parameter(
+            names = {"--fail-fast", "-s"},
+            description = "Whether to stop at the first difference found, without comparing the other files or writing any output (Not Required)",
+            order = 12)
+    private boolean failFast;
+
     @Parameter(
             names = {"--debug", "-d"},
             description = "Whether to show debug logging statements",
-            order = 6)
+            order = 13)
     private boolean debug;
 
     @Parameter(
             names = {"--help", "-h"},
             description = "Whether to displaya a summary of options",
             help = true,
-            order = 7)
+            order = 14)
     private boolean help;
 
     private final Logger LOGGER = Logger.getLogger(OmlMergeApp.class);
 
+    // the files to clone with reflinks once all the files are written
+    private final ReflinkQueue reflinks = new ReflinkQueue();
+
+    private static final String OUTPUT_CATALOG =
+            "<?xml version='1.0'?>\n" +
+                    "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"public\">\n" +
+                    "\t<rewriteURI uriStartString=\"http://\" rewritePrefix=\"./\" />\n" +
+                    "</catalog>";
+
 	/**
 	 * Main method
 	 * 
@@ -155,113 +222,315 @@ public class OmlMergeApp {
         LOGGER.info("=================================================================");
         if (inputZipPaths.isEmpty() && inputFolderPaths.isEmpty() && inputCatalogPaths.isEmpty())
             throw new IllegalArgumentException("No inputs specified!");
+        if (outputFolderPath != null && outputZipPath != null)
+            throw new IllegalArgumentException("An output zip cannot be specified along with an output folder!");
+        if (outputFolderPath == null && outputZipPath == null)
+            throw new IllegalArgumentException("Either an output folder or an output zip must be specified!");
+        if (outputZipPath != null && (incremental || !OutputMode.COPY.equals(outputMode)))
+            throw new IllegalArgumentException("The incremental and output mode options only apply to an output folder!");
 
         LOGGER.info(("Input Zips = [" + String.join(", ", inputZipPaths)) + "]");
         LOGGER.info(("Input Folders = [" + String.join(", ", inputFolderPaths)) + "]");
         LOGGER.info(("Input Catalogs = [" + String.join(", ", inputCatalogPaths)) + "]");
         LOGGER.info("Output Folder = " + outputFolderPath);
+        LOGGER.info("Output Zip = " + outputZipPath);
+        LOGGER.info("Compression Level = " + compressionLevel);
+        LOGGER.info("Threads = " + threads);
+        LOGGER.info("Hash Cache = " + hashCachePath);
+        LOGGER.info("Incremental = " + incremental);
+        LOGGER.info("Output Mode = " + outputMode);
+        LOGGER.info("Fail Fast = " + failFast);
+
+        // Create output OML Catalog (the output zip gets its catalog when it is written)
+        File outputFolder = null;
+        if (outputFolderPath != null) {
+            LOGGER.info("Saving: " + outputFolderPath);
+            outputFolder = new File(outputFolderPath);
+            outputFolder.mkdirs();
+        }
 
-        // Create output OML Catalog
-        LOGGER.info("Saving: " + outputFolderPath);
-        File outputFolder = new File(outputFolderPath);
-        outputFolder.mkdirs();
-
-        if (generateOutputCatalog) {
+        if (generateOutputCatalog && outputFolder != null) {
 	        File outputCatalogFile = outputFolder.toPath().resolve("catalog.xml").toFile();
-	        BufferedWriter bw = new BufferedWriter(new FileWriter(outputCatalogFile));
-	        bw.write(
-	                "<?xml version='1.0'?>\n" +
-	                        "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"public\">\n" +
-	                        "\t<rewriteURI uriStartString=\"http://\" rewritePrefix=\"./\" />\n" +
-	                        "</catalog>"
-	        );
-	        bw.close();
+	        // an incremental merge leaves an identical catalog untouched
+	        if (!incremental || !OUTPUT_CATALOG.equals(outputCatalogFile.exists() ? Files.readString(outputCatalogFile.toPath()) : null)) {
+		        BufferedWriter bw = new BufferedWriter(new FileWriter(outputCatalogFile));
+		        bw.write(OUTPUT_CATALOG);
+		        bw.close();
+	        }
         }
 
-        List<InputFiles> allInputs = new ArrayList<>();
-
-        byte[] buffer = new byte[4096];
-        for (String inputZipPath : inputZipPaths) {
-            Path dir = Files.createTempDirectory("oml-");
-            dir.toFile().deleteOnExit();
-            ZipInputStream zis = new ZipInputStream(new FileInputStream(inputZipPath));
-            ZipEntry ze;
-            while (null != (ze = zis.getNextEntry())) {
-                File f = dir.resolve(ze.getName()).toFile();
-                f.deleteOnExit();
-                if (ze.isDirectory())
-                    f.mkdirs();
-                else {
-                    FileOutputStream fos = new FileOutputStream(f);
-                    int len;
-                    while ((len = zis.read(buffer)) > 0) {
-                        fos.write(buffer, 0, len);
-                    }
-                    fos.close();
-                }
-                zis.closeEntry();
+        final HashCache hashCache = (hashCachePath != null) ? HashCache.load(Paths.get(hashCachePath)) : null;
+
+        // zip archives are read in place through their zip file systems
+        final List<FileSystem> zipFileSystems = Collections.synchronizedList(new ArrayList<>());
+        final List<UniqueFile> differences;
+        try {
+            differences = merge(outputFolder != null ? outputFolder.toPath() : null, zipFileSystems, hashCache);
+        } finally {
+            for (FileSystem zipFileSystem : zipFileSystems) {
+                zipFileSystem.close();
             }
-            zis.close();
-            Collection<UniqueFile> ufs = collectOMLUniqueFiles(dir.toFile());
-            allInputs.add(new InputFiles(inputZipPath, ufs));
         }
 
-        for (String inputFolderPath : inputFolderPaths) {
-            File dir = new File(inputFolderPath);
-            Collection<UniqueFile> ufs = collectOMLUniqueFiles(dir);
-            allInputs.add(new InputFiles(inputFolderPath, ufs));
+        if (hashCache != null) {
+            hashCache.save();
         }
 
-        for (String inputCatalogPath : inputCatalogPaths) {
-            File inputCatalogFile = new File(inputCatalogPath);
-            File inputFolder = inputCatalogFile.getParentFile();
-            Collection<UniqueFile> ufs = collectOMLUniqueFiles(inputFolder);
-            allInputs.add(new InputFiles(inputCatalogPath, ufs));
-        }
+        LOGGER.info("=================================================================");
+        LOGGER.info("                          E N D");
+        LOGGER.info("=================================================================");
+
+        return differences;
+    }
+    
+    private List<UniqueFile> merge(Path outputFolder, List<FileSystem> zipFileSystems, HashCache hashCache) throws IOException {
+        final ExecutorService executor = (threads > 1) ? new ForkJoinPool(threads) : null;
+        try {
+            final FileTable table = new FileTable();
+
+            // scan the inputs
+            List<Callable<Void>> scans = new ArrayList<>();
+            for (String inputZipPath : inputZipPaths) {
+                FileTable.Input input = table.addInput(inputZipPath, Paths.get(inputZipPath).toAbsolutePath());
+                scans.add(() -> {
+                    FileSystem zipFileSystem = FileSystems.newFileSystem(input.getArchive());
+                    zipFileSystems.add(zipFileSystem);
+                    collectOMLFiles(input, zipFileSystem.getPath("/"));
+                    return null;
+                });
+            }
+            for (String inputFolderPath : inputFolderPaths) {
+                FileTable.Input input = table.addInput(inputFolderPath, null);
+                scans.add(() -> {
+                    collectOMLFiles(input, Paths.get(inputFolderPath).toAbsolutePath());
+                    return null;
+                });
+            }
+            for (String inputCatalogPath : inputCatalogPaths) {
+                FileTable.Input input = table.addInput(inputCatalogPath, null);
+                scans.add(() -> {
+                    collectOMLFiles(input, Paths.get(inputCatalogPath).toAbsolutePath().getParent());
+                    return null;
+                });
+            }
+            invokeAll(executor, scans);
+
+            // group the files by relative path, in input order
+            table.build();
+
+            // compare the files of each path to the one from the first input (paths are independent);
+            // when failing fast, the comparisons that have not started yet are skipped after a difference
+            final AtomicBoolean failed = new AtomicBoolean();
+            List<Callable<UniqueFile>> comparisons = new ArrayList<>();
+            for (int first : table.getGroups()) {
+                if (table.getNextFile(first) != -1) {
+                    comparisons.add(() -> {
+                        if (failed.get()) {
+                            return null;
+                        }
+                        UniqueFile difference = table.compare(first, hashCache);
+                        if (difference != null && failFast) {
+                            failed.set(true);
+                        }
+                        return difference;
+                    });
+                }
+            }
+            List<UniqueFile> differences = invokeAll(executor, comparisons).stream()
+                    .filter(Objects::nonNull)
+                    .sorted(Comparator.comparing((UniqueFile uf) -> uf.relativePath).thenComparing(uf -> uf.extension))
+                    .collect(Collectors.toList());
+
+            // Check errors
+            if (!differences.isEmpty()) {
+                LOGGER.error(differences.size() + " differences found.");
+                for (UniqueFile difference : differences) {
+                    LOGGER.error(difference.toError());
+                }
+                if (failFast) {
+                    LOGGER.error("Stopping at the first difference without writing the output");
+                    return differences;
+                }
+            }
 
-        Map<Path, UniqueFile> uniqueFiles = new HashMap<>();
-
-        allInputs.forEach((InputFiles inputFiles) -> {
-            inputFiles.files.forEach((UniqueFile f) -> {
-                if (!uniqueFiles.containsKey(f.relativePath)) {
-                    f.inputs.add(inputFiles.input);
-                    uniqueFiles.put(f.relativePath, f);
-                } else {
-                    UniqueFile uf = uniqueFiles.get(f.relativePath);
-                    if (uf.extension.equals(f.extension) && Arrays.equals(uf.hash, f.hash))
-                        uf.inputs.add(inputFiles.input);
-                    else {
-                        uf.differentInputs.add(inputFiles.input);
+            if (outputZipPath != null) {
+                writeZip(table, Paths.get(outputZipPath));
+                return differences;
+            }
+
+            // write the files (zip entries are copied straight from their archives)
+            final OutputManifest previousManifest = incremental ? OutputManifest.load(outputFolder) : null;
+            final OutputManifest manifest = incremental ? new OutputManifest() : null;
+            List<Callable<Boolean>> writes = new ArrayList<>();
+            for (int first : table.getGroups()) {
+                writes.add(() -> write(table, first, outputFolder, hashCache, previousManifest, manifest));
+            }
+            long written = invokeAll(executor, writes).stream().filter(w -> w).count();
+            reflinks.flush();
+
+            if (incremental) {
+                // delete the files written by the previous merge that no longer come from any input
+                int deleted = 0;
+                for (String relativeFile : previousManifest.getFiles()) {
+                    if (!manifest.getFiles().contains(relativeFile) && delete(outputFolder, relativeFile)) {
+                        deleted++;
                     }
                 }
-            });
-        });
+                manifest.save(outputFolder);
+                LOGGER.info(written + " files written, " + (table.getGroups().length - written) + " files unchanged, " + deleted + " files deleted");
+            }
 
-        List<UniqueFile> differences = uniqueFiles.values().stream().filter(uf -> !uf.differentInputs.isEmpty()).collect(Collectors.toList());
+            return differences;
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+        }
+    }
 
-        // Check errors
-        if (!differences.isEmpty()) {
-            LOGGER.error(differences.size() + " differences found.");
-            for (UniqueFile difference : differences) {
-                LOGGER.error(difference.toError());
+    /**
+     * Streams the merged files, and the catalog if requested, into the output zip archive in
+     * relative path order. Stored entries need their size and CRC-32 up front: those of input zip
+     * entries are known already, while input files in folders are read once more to compute them.
+     */
+    private void writeZip(FileTable table, Path outputZip) throws IOException {
+        LOGGER.info("Saving: " + outputZipPath);
+        Path parent = outputZip.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        boolean stored = CompressionLevel.STORED.equals(compressionLevel);
+        List<Integer> files = Arrays.stream(table.getGroups()).boxed()
+                .sorted(Comparator.comparing(table::getRelativeFile))
+                .collect(Collectors.toList());
+        byte[] buffer = new byte[64 * 1024];
+        try (ZipOutputStream zip = new ZipOutputStream(new BufferedOutputStream(Files.newOutputStream(outputZip)))) {
+            if (stored) {
+                zip.setMethod(ZipOutputStream.STORED);
+            } else {
+                zip.setLevel(Integer.parseInt(compressionLevel));
+            }
+            if (generateOutputCatalog) {
+                byte[] catalog = OUTPUT_CATALOG.getBytes(StandardCharsets.UTF_8);
+                ZipEntry entry = new ZipEntry("catalog.xml");
+                if (stored) {
+                    CRC32 crc = new CRC32();
+                    crc.update(catalog);
+                    entry.setSize(catalog.length);
+                    entry.setCrc(crc.getValue());
+                }
+                zip.putNextEntry(entry);
+                zip.write(catalog);
+                zip.closeEntry();
+            }
+            for (int file : files) {
+                Path inputFile = table.getPath(file);
+                ZipEntry entry = new ZipEntry(table.getRelativeFile(file));
+                entry.setLastModifiedTime(Files.getLastModifiedTime(inputFile));
+                if (stored) {
+                    long size = table.getSize(file);
+                    if (size != -1) {
+                        entry.setSize(size);
+                        entry.setCrc(Integer.toUnsignedLong(table.getCrc(file)));
+                    } else {
+                        CRC32 crc = new CRC32();
+                        size = 0;
+                        try (InputStream is = Files.newInputStream(inputFile)) {
+                            int len;
+                            while ((len = is.read(buffer)) != -1) {
+                                crc.update(buffer, 0, len);
+                                size += len;
+                            }
+                        }
+                        entry.setSize(size);
+                        entry.setCrc(crc.getValue());
+                    }
+                }
+                zip.putNextEntry(entry);
+                try (InputStream is = Files.newInputStream(inputFile)) {
+                    int len;
+                    while ((len = is.read(buffer)) != -1) {
+                        zip.write(buffer, 0, len);
+                    }
+                }
+                zip.closeEntry();
             }
         }
+        LOGGER.info(files.size() + " files written to " + outputZipPath);
+    }
 
-        for (UniqueFile uf : uniqueFiles.values()) {
-            String relativeFile = uf.relativePath.toString() + "." + uf.extension;
-            Path outputFile = outputFolder.toPath().resolve(relativeFile);
-            outputFile.getParent().toFile().mkdirs();
-            Path inputFile = uf.top.resolve(relativeFile);
-            Files.copy(inputFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+    /**
+     * Writes the given file to the output folder unless the manifest of the previous merge
+     * shows it is up to date, and returns whether it was written
+     */
+    private boolean write(FileTable table, int file, Path outputFolder, HashCache hashCache, OutputManifest previousManifest, OutputManifest manifest) throws IOException {
+        String relativeFile = table.getRelativeFile(file);
+        Path outputFile = outputFolder.resolve(relativeFile);
+        Path inputFile = table.getPath(file);
+        if (manifest != null) {
+            byte[] hash = table.getHash(file, hashCache);
+            BasicFileAttributes attributes = Files.readAttributes(inputFile, BasicFileAttributes.class);
+            long size = attributes.size();
+            long lastModified = attributes.lastModifiedTime().toMillis();
+            boolean upToDate = previousManifest.isUpToDate(relativeFile, hash, size, lastModified, outputFile);
+            if (!upToDate) {
+                write(inputFile, outputFile);
+            }
+            manifest.record(relativeFile, hash, size, lastModified, outputFile);
+            return !upToDate;
         }
+        write(inputFile, outputFile);
+        return true;
+    }
 
-        LOGGER.info("=================================================================");
-        LOGGER.info("                          E N D");
-        LOGGER.info("=================================================================");
+    /**
+     * Writes the given input file to the given output file according to the output mode, falling
+     * back to copying it when the output mode is not possible for this file
+     */
+    private void write(Path inputFile, Path outputFile) throws IOException {
+        Files.createDirectories(outputFile.getParent());
+        // zip entries can only be copied
+        if (!OutputMode.COPY.equals(outputMode) && inputFile.getFileSystem() == FileSystems.getDefault()) {
+            try {
+                Files.deleteIfExists(outputFile);
+                switch (outputMode) {
+                    case OutputMode.HARDLINK:
+                        Files.createLink(outputFile, inputFile);
+                        return;
+                    case OutputMode.SYMLINK:
+                        Files.createSymbolicLink(outputFile, inputFile.toAbsolutePath());
+                        return;
+                    case OutputMode.REFLINK_IF_AVAILABLE:
+                        // the reflinks are made in batches once all the files are written
+                        if (reflinks.add(inputFile, outputFile)) {
+                            return;
+                        }
+                        break;
+                }
+            } catch (IOException | UnsupportedOperationException e) {
+                LOGGER.debug("Copying " + inputFile + " since it cannot be written with output mode " + outputMode + ": " + e);
+            }
+        }
+        Files.copy(inputFile, outputFile, StandardCopyOption.REPLACE_EXISTING);
+    }
 
-        return differences;
+    /**
+     * Deletes the given file from the output folder, along with the folders it leaves empty
+     */
+    private static boolean delete(Path outputFolder, String relativeFile) throws IOException {
+        Path file = outputFolder.resolve(relativeFile);
+        if (!Files.deleteIfExists(file)) {
+            return false;
+        }
+        for (Path folder = file.getParent(); !folder.equals(outputFolder); folder = folder.getParent()) {
+            try (DirectoryStream<Path> children = Files.newDirectoryStream(folder)) {
+                if (children.iterator().hasNext()) {
+                    break;
+                }
+            }
+            Files.delete(folder);
+        }
+        return true;
     }
-    
+
     /**
      * Returns the SHA-256 hash of the contents of the given InputStream with CR and CRLF
      * line endings normalized to LF.
@@ -271,55 +540,128 @@ public class OmlMergeApp {
      * @throws java.io.IOException if there is an errpr reading the input stream
      */
     public static byte[] normalizedHash(InputStream is) throws IOException {
-        try (BufferedInputStream bis = new BufferedInputStream(is)) {
-            MessageDigest digest = MessageDigest.getInstance("SHA-256");
-            int b;
-            while ((b = bis.read()) != -1) {
-                if (b == '\r') {
-                    // Replace CR with LF
-                    b = '\n';
-                    // Ignore LF immediately after CR
-                    bis.mark(1);
-                    if (bis.read() != '\n') {
-                        bis.reset();
+        try (InputStream in = is) {
+            final MessageDigest digest = DIGESTS.get();
+            final byte[] buffer = BUFFERS.get();
+            digest.reset();
+            boolean cr = false; // whether the last byte of the previous block was a CR
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                int start = 0;
+                if (cr && len > 0 && buffer[0] == '\n') {
+                    // Ignore LF immediately after CR (across blocks)
+                    start = 1;
+                }
+                int i = start;
+                while (i < len && buffer[i] != '\r') {
+                    i++;
+                }
+                if (i == len) {
+                    // No CR in this block: hash it as is
+                    digest.update(buffer, start, len - start);
+                    cr = false;
+                    continue;
+                }
+                // Normalize the rest of the block in place
+                int n = i;
+                cr = false;
+                for (; i < len; i++) {
+                    byte b = buffer[i];
+                    if (b == '\n' && cr) {
+                        // Ignore LF immediately after CR
+                        cr = false;
+                        continue;
                     }
+                    cr = (b == '\r');
+                    // Replace CR with LF
+                    buffer[n++] = cr ? (byte) '\n' : b;
                 }
-                digest.update((byte) b);
+                digest.update(buffer, start, n - start);
             }
             return digest.digest();
+        }
+    }
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<byte[]> BUFFERS = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
         } catch (NoSuchAlgorithmException e) {
             throw new AssertionError(e);
         }
+    });
+
+    /**
+     * Runs the given tasks on the given executor (or on the calling thread when it is null)
+     * and returns their results in the order of the tasks.
+     */
+    private static <T> List<T> invokeAll(ExecutorService executor, List<Callable<T>> tasks) throws IOException {
+        List<T> results = new ArrayList<>(tasks.size());
+        try {
+            if (executor == null) {
+                for (Callable<T> task : tasks) {
+                    results.add(task.call());
+                }
+            } else {
+                for (Future<T> future : executor.invokeAll(tasks)) {
+                    results.add(future.get());
+                }
+            }
+        } catch (ExecutionException e) {
+            throw asIOException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        } catch (Exception e) {
+            throw asIOException(e);
+        }
+        return results;
     }
 
-    private static Collection<UniqueFile> collectOMLUniqueFiles(File directory) throws IOException {
-        Path top = directory.toPath();
-        Collection<UniqueFile> ufiles = new ArrayList<>();
-        for (PathAndExtension pe : collectOMLFiles(directory)) {
-            ufiles.add(new UniqueFile(top, pe));
+    private static IOException asIOException(Throwable t) {
+        if (t instanceof IOException) {
+            return (IOException) t;
+        } else if (t instanceof RuntimeException) {
+            throw (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
         }
-        return ufiles;
+        return new IOException(t);
     }
 
     private final static Set<String> OML_EXTENSIONS = new HashSet<String>(Arrays.asList(OmlConstants.OML_EXTENSIONS));
 
-    private static Collection<PathAndExtension> collectOMLFiles(File directory) throws IOException {
-        List<PathAndExtension> omlFiles = new ArrayList<>();
-        for (File file : Objects.requireNonNull(directory.listFiles())) {
-            if (file.isFile()) {
-                String ext = getFileExtension(file);
-                if (OML_EXTENSIONS.contains(ext)) {
-                    omlFiles.add(new PathAndExtension(file, ext));
+    private static void collectOMLFiles(FileTable.Input input, Path top) throws IOException {
+        input.setTop(top);
+        collectOMLFiles(input, top, input.getArchive() != null);
+    }
+
+    private static void collectOMLFiles(FileTable.Input input, Path directory, boolean zip) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (Files.isRegularFile(file)) {
+                    String ext = getFileExtension(file);
+                    if (OML_EXTENSIONS.contains(ext)) {
+                        if (zip) {
+                            // the size and CRC-32 of a zip entry come from the central directory
+                            Map<String, Object> attributes = Files.readAttributes(file, "zip:size,crc");
+                            input.add(file, ext, (Long) attributes.get("size"), ((Long) attributes.get("crc")).intValue());
+                        } else {
+                            input.add(file, ext, -1, 0);
+                        }
+                    }
+                } else if (Files.isDirectory(file)) {
+                    collectOMLFiles(input, file, zip);
                 }
-            } else if (file.isDirectory()) {
-                omlFiles.addAll(collectOMLFiles(file));
             }
         }
-        return omlFiles;
     }
 
-    private static String getFileExtension(File file) {
-        String fileName = file.getName();
+    private static String getFileExtension(Path file) {
+        String fileName = file.getFileName().toString();
         if (fileName.lastIndexOf(".") != -1)
             return fileName.substring(fileName.lastIndexOf(".") + 1);
         else
@@ -336,46 +678,28 @@ public class OmlMergeApp {
     	return (version != null) ? version : "<SNAPSHOT>";
     }
 
-    /**
-     * A class representing a path and an extension 
-     */
-    private static class PathAndExtension {
-    	private final Path absolutePath;
-    	private final String extension;
-    	private byte[] hash;
-
-        public PathAndExtension(File file, String extension) throws IOException {
-            String path = file.getAbsolutePath();
-            this.extension = extension;
-            this.absolutePath = new File(path.substring(0, path.length() - 1 - extension.length())).toPath();
-            try (FileInputStream fis = new FileInputStream(file)) {
-                this.hash = normalizedHash(fis);
-            }
-        }
-    }
-
     /**
      * A class representing a unique file 
      */
     public static class UniqueFile {
-        private final Path top;
-        private final Path relativePath;
+        private final String relativePath;
         private final String extension;
-        private final byte[] hash;
-        private final List<String> inputs = new ArrayList<>();
-        private final List<String> differentInputs = new ArrayList<>();
+        private final List<String> inputs;
+        private final List<String> differentInputs;
 
         /**
          * Creates a new UniqueFile object
          * 
-         * @param top the top path
-         * @param pe the path and extension
+         * @param relativePath the relative path without extension
+         * @param extension the extension
+         * @param inputs the inputs with equivalent contents
+         * @param differentInputs the inputs with different contents
          */
-        public UniqueFile(Path top, PathAndExtension pe) {
-            this.top = top;
-            this.relativePath = top.relativize(pe.absolutePath);
-            this.extension = pe.extension;
-            this.hash = pe.hash;
+        UniqueFile(String relativePath, String extension, List<String> inputs, List<String> differentInputs) {
+            this.relativePath = relativePath;
+            this.extension = extension;
+            this.inputs = inputs;
+            this.differentInputs = differentInputs;
         }
 
         /**
@@ -396,19 +720,6 @@ public class OmlMergeApp {
         }
     }
 
-    /**
-     * A class representing a collection of input files 
-     */
-    private static class InputFiles {
-    	private final String input;
-    	private final Collection<UniqueFile> files;
-
-        public InputFiles(String input, Collection<UniqueFile> files) {
-            this.input = input;
-            this.files = files;
-        }
-    }
-
     /**
      * The validator of the input zip path 
      */
@@ -463,6 +774,67 @@ public class OmlMergeApp {
         }
     }
 
+    /**
+     * The validator of the thread count 
+     */
+    public static class ThreadCount implements IParameterValidator {
+    	/**
+    	 * Creates a new ThreadCount object
+    	 */
+    	public ThreadCount() {
+    	}
+        @Override
+        public void validate(final String name, final String value) throws ParameterException {
+            try {
+                if (Integer.parseInt(value) > 0) {
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                // fall through
+            }
+            throw new ParameterException("Value " + value + " is not a positive number of threads.");
+        }
+    }
+
+    /**
+     * The validator of the compression level 
+     */
+    public static class CompressionLevel implements IParameterValidator {
+    	static final String STORED = "stored";
+    	/**
+    	 * Creates a new CompressionLevel object
+    	 */
+    	public CompressionLevel() {
+    	}
+        @Override
+        public void validate(final String name, final String value) throws ParameterException {
+            if (!STORED.equals(value) && !value.matches("[0-9]")) {
+                throw new ParameterException("Value " + value + " is not a valid compression level (options: stored, 0-9).");
+            }
+        }
+    }
+
+    /**
+     * The validator of the output mode 
+     */
+    public static class OutputMode implements IParameterValidator {
+    	static final String COPY = "copy";
+    	static final String HARDLINK = "hardlink";
+    	static final String SYMLINK = "symlink";
+    	static final String REFLINK_IF_AVAILABLE = "reflink-if-available";
+    	/**
+    	 * Creates a new OutputMode object
+    	 */
+    	public OutputMode() {
+    	}
+        @Override
+        public void validate(final String name, final String value) throws ParameterException {
+            if (!Arrays.asList(COPY, HARDLINK, SYMLINK, REFLINK_IF_AVAILABLE).contains(value)) {
+                throw new ParameterException("Value " + value + " is not one of the output modes: " + String.join(", ", COPY, HARDLINK, SYMLINK, REFLINK_IF_AVAILABLE));
+            }
+        }
+    }
+
     /**
      * The validator of the input file path 
      */
@@ -478,4 +850,23 @@ public class OmlMergeApp {
         }
     }
 
+    /**
+     * The validator of the output zip path 
+     */
+    public static class OutputZipPath implements IParameterValidator {
+    	/**
+    	 * Creates a new OutputZipPath object
+    	 */
+    	public OutputZipPath() {
+    	}
+        @Override
+        public void validate(final String name, final String value) throws ParameterException {
+            File file = new File(value).getAbsoluteFile();
+            if (file.isDirectory()) {
+                throw new ParameterException("Value " + value + " is a folder rather than a path to an output zip archive");
+            }
+            file.getParentFile().mkdirs();
+        }
+    }
+
 }
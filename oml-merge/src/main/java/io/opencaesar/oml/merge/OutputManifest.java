@@ -0,0 +1,188 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A manifest of the files written to a merge output folder by an incremental merge.
+ *
+ * Each output file is recorded with the normalized hash, size and last-modified time of the input
+ * file it was written from, and the last-modified time it had once written. An output file is up to
+ * date when its input still has the same hash, size and last-modified time, and the output file has
+ * not been touched since. The normalized hash ignores line endings, so an input whose line endings
+ * changed is only told apart by its last-modified time (and usually its size).
+ */
+class OutputManifest {
+
+    /**
+     * The name of the manifest file in the output folder
+     */
+    static final String FILE_NAME = ".oml-merge-manifest";
+
+    // the first line of the manifest file, whose format changes with its version
+    private static final String HEADER = "oml-merge-manifest 2";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the manifest of the given output folder, or returns an empty manifest if there is none
+     *
+     * @param outputFolder the output folder
+     * @return the manifest
+     * @throws IOException error
+     */
+    public static OutputManifest load(Path outputFolder) throws IOException {
+        OutputManifest manifest = new OutputManifest();
+        Path file = outputFolder.resolve(FILE_NAME);
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                // a manifest of another version is ignored, so all the files are written again
+                if (!HEADER.equals(reader.readLine())) {
+                    return manifest;
+                }
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] fields = line.split(" ", 5);
+                    if (fields.length == 5) {
+                        manifest.entries.put(fields[4], new Entry(HexFormat.of().parseHex(fields[0]), Long.parseLong(fields[1]), Long.parseLong(fields[2]), Long.parseLong(fields[3])));
+                    }
+                }
+            }
+        }
+        return manifest;
+    }
+
+    /**
+     * Returns whether the given output file was written from an input with the given hash, size and
+     * last-modified time, and has not been modified since
+     *
+     * @param relativeFile the path of the output file relative to the output folder
+     * @param hash the normalized hash of the input file
+     * @param size the size of the input file
+     * @param inputLastModified the last-modified time of the input file
+     * @param outputFile the output file
+     * @return whether the output file is up to date
+     * @throws IOException error
+     */
+    public boolean isUpToDate(String relativeFile, byte[] hash, long size, long inputLastModified, Path outputFile) throws IOException {
+        Entry entry = entries.get(relativeFile);
+        if (entry == null || entry.size != size || entry.inputLastModified != inputLastModified || !Arrays.equals(entry.hash, hash) || !Files.exists(outputFile)) {
+            return false;
+        }
+        BasicFileAttributes attributes = Files.readAttributes(outputFile, BasicFileAttributes.class);
+        return attributes.size() == size && attributes.lastModifiedTime().toMillis() == entry.lastModified;
+    }
+
+    /**
+     * Records that the given output file was written from an input with the given hash, size and
+     * last-modified time. The last-modified time of the output file is read when the manifest is saved,
+     * so the output file may be written later (e.g., with a batch of reflinks).
+     *
+     * @param relativeFile the path of the output file relative to the output folder
+     * @param hash the normalized hash of the input file
+     * @param size the size of the input file
+     * @param inputLastModified the last-modified time of the input file
+     * @param outputFile the output file
+     * @throws IOException error
+     */
+    public void record(String relativeFile, byte[] hash, long size, long inputLastModified, Path outputFile) {
+        entries.put(relativeFile, new Entry(hash, size, inputLastModified, outputFile));
+    }
+
+    /**
+     * Returns the paths of the recorded output files relative to the output folder
+     *
+     * @return Set of paths
+     */
+    public Set<String> getFiles() {
+        return entries.keySet();
+    }
+
+    /**
+     * Saves this manifest in the given output folder
+     *
+     * @param outputFolder the output folder
+     * @throws IOException error
+     */
+    public void save(Path outputFolder) throws IOException {
+        Path temp = Files.createTempFile(outputFolder, FILE_NAME, ".tmp");
+        try {
+            try (BufferedWriter writer = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                writer.write(HEADER);
+                writer.newLine();
+                for (Map.Entry<String, Entry> e : new TreeMap<>(entries).entrySet()) {
+                    Entry entry = e.getValue();
+                    long lastModified = (entry.outputFile != null) ? Files.getLastModifiedTime(entry.outputFile).toMillis() : entry.lastModified;
+                    writer.write(HexFormat.of().formatHex(entry.hash) + " " + entry.size + " " + entry.inputLastModified + " " + lastModified + " " + e.getKey());
+                    writer.newLine();
+                }
+            }
+            try {
+                Files.move(temp, outputFolder.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, outputFolder.resolve(FILE_NAME), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * An entry of the manifest
+     */
+    private static final class Entry {
+        private final byte[] hash;
+        private final long size;
+        private final long inputLastModified;
+        private final long lastModified;
+        private final Path outputFile;
+
+        private Entry(byte[] hash, long size, long inputLastModified, long lastModified) {
+            this.hash = hash;
+            this.size = size;
+            this.inputLastModified = inputLastModified;
+            this.lastModified = lastModified;
+            this.outputFile = null;
+        }
+
+        // an entry whose output file's last-modified time is read when saved
+        private Entry(byte[] hash, long size, long inputLastModified, Path outputFile) {
+            this.hash = hash;
+            this.size = size;
+            this.inputLastModified = inputLastModified;
+            this.lastModified = -1;
+            this.outputFile = outputFile;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie of interned relative paths.
+ *
+ * Each path is a node identified by an int. A node only stores its parent node and the id of its
+ * last segment, and segment names are interned, so a path shared by many inputs (or a folder shared
+ * by many paths) is stored once. Children are found through an open-addressing table keyed by
+ * (parent, segment) pairs packed in a long.
+ */
+final class PathTrie {
+
+    /**
+     * The node of the empty path
+     */
+    static final int ROOT = 0;
+
+    private final Map<String, Integer> segmentIds = new HashMap<>();
+    private String[] segmentNames = new String[256];
+    private int segmentCount;
+
+    private int[] parents = new int[1024];
+    private int[] segments = new int[1024];
+    private int nodeCount = 1;
+
+    private long[] childKeys = new long[2048];
+    private int[] childNodes = new int[2048];
+    private int childCount;
+
+    /**
+     * Returns the node of the given relative path, adding it if needed
+     *
+     * @param relativePath a relative path
+     * @return the node of the path
+     */
+    synchronized int intern(Path relativePath) {
+        int node = ROOT;
+        for (Path name : relativePath) {
+            node = child(node, segment(name.toString()));
+        }
+        return node;
+    }
+
+    /**
+     * Returns the relative path of the given node with its segments separated by '/'. It does not
+     * synchronize with {@link #intern(Path)}, so it must only be called once the paths are interned.
+     *
+     * @param node a node
+     * @return the relative path
+     */
+    String toString(int node) {
+        if (node == ROOT) {
+            return "";
+        }
+        String parent = toString(parents[node]);
+        String name = segmentNames[segments[node]];
+        return parent.isEmpty() ? name : parent + "/" + name;
+    }
+
+    /**
+     * Returns the number of nodes in this trie (including the root)
+     *
+     * @return the number of nodes
+     */
+    synchronized int size() {
+        return nodeCount;
+    }
+
+    private int segment(String name) {
+        Integer id = segmentIds.get(name);
+        if (id == null) {
+            id = segmentCount++;
+            if (id == segmentNames.length) {
+                segmentNames = Arrays.copyOf(segmentNames, id * 2);
+            }
+            segmentNames[id] = name;
+            segmentIds.put(name, id);
+        }
+        return id;
+    }
+
+    private int child(int parent, int segment) {
+        long key = ((long) parent << 32) | segment;
+        int slot = slot(key);
+        if (childNodes[slot] != 0) {
+            return childNodes[slot];
+        }
+        int node = nodeCount++;
+        if (node == parents.length) {
+            parents = Arrays.copyOf(parents, node * 2);
+            segments = Arrays.copyOf(segments, node * 2);
+        }
+        parents[node] = parent;
+        segments[node] = segment;
+        childKeys[slot] = key;
+        childNodes[slot] = node;
+        if (++childCount * 2 > childKeys.length) {
+            rehash();
+        }
+        return node;
+    }
+
+    private int slot(long key) {
+        int mask = childKeys.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+        // node 0 (the root) is never a child, so it marks an empty slot
+        while (childNodes[slot] != 0 && childKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        long[] keys = childKeys;
+        int[] nodes = childNodes;
+        childKeys = new long[keys.length * 2];
+        childNodes = new int[nodes.length * 2];
+        for (int i = 0; i < keys.length; i++) {
+            if (nodes[i] != 0) {
+                int slot = slot(keys[i]);
+                childKeys[slot] = keys[i];
+                childNodes[slot] = nodes[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.merge;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A queue of input files to clone into output folders with copy-on-write reflinks.
+ *
+ * The files are cloned in batches, with one cp process per output folder and batch of files rather
+ * than per file. Whether reflinks are available is decided per pair of input and output file stores
+ * by the first batch between them: when it fails, its files and the other files between the same
+ * file stores are copied instead, and the fallback is logged once for the pair.
+ */
+class ReflinkQueue {
+
+    // the number of files cloned by one cp process, which keeps its command line short enough
+    private static final int BATCH_SIZE = 256;
+
+    private static final Logger LOGGER = Logger.getLogger(ReflinkQueue.class);
+
+    private final List<String> command;
+    private final Map<Path, Queue<Path>> queued = new ConcurrentHashMap<>();
+    private final Map<Path, FileStore> fileStores = new ConcurrentHashMap<>();
+
+    /**
+     * Creates a new ReflinkQueue object for the cp command of this operating system
+     */
+    ReflinkQueue() {
+        String os = System.getProperty("os.name").toLowerCase();
+        if (os.contains("linux")) {
+            command = Arrays.asList("cp", "--reflink=always");
+        } else if (os.contains("mac")) {
+            command = Arrays.asList("cp", "-c");
+        } else {
+            command = null;
+        }
+    }
+
+    /**
+     * Queues the given input file to be cloned into the given output file, which must have the same
+     * name, and returns whether it could
+     *
+     * @param inputFile the input file
+     * @param outputFile the output file
+     * @return whether the file is queued (otherwise it is for the caller to copy)
+     */
+    public boolean add(Path inputFile, Path outputFile) {
+        if (command == null || !inputFile.getFileName().toString().equals(outputFile.getFileName().toString())) {
+            return false;
+        }
+        queued.computeIfAbsent(outputFile.getParent(), k -> new ConcurrentLinkedQueue<>()).add(inputFile);
+        return true;
+    }
+
+    /**
+     * Clones the queued files into their output folders, or copies them where reflinks are not available
+     *
+     * @throws IOException error
+     */
+    public void flush() throws IOException {
+        // the queued files by pair of file stores, then by output folder
+        Map<List<FileStore>, Map<Path, List<Path>>> batches = new LinkedHashMap<>();
+        for (Map.Entry<Path, Queue<Path>> e : queued.entrySet()) {
+            FileStore outputStore = getFileStore(e.getKey());
+            for (Path inputFile : e.getValue()) {
+                List<FileStore> stores = Arrays.asList(getFileStore(inputFile.getParent()), outputStore);
+                batches.computeIfAbsent(stores, k -> new LinkedHashMap<>()).computeIfAbsent(e.getKey(), k -> new ArrayList<>()).add(inputFile);
+            }
+        }
+        queued.clear();
+
+        for (Map.Entry<List<FileStore>, Map<Path, List<Path>>> stores : batches.entrySet()) {
+            boolean available = true;
+            for (Map.Entry<Path, List<Path>> e : stores.getValue().entrySet()) {
+                Path outputFolder = e.getKey();
+                List<Path> inputFiles = e.getValue();
+                for (int i = 0; i < inputFiles.size(); i += BATCH_SIZE) {
+                    List<Path> batch = inputFiles.subList(i, Math.min(i + BATCH_SIZE, inputFiles.size()));
+                    if (available && clone(batch, outputFolder)) {
+                        continue;
+                    }
+                    if (available) {
+                        available = false;
+                        LOGGER.info("Reflinks are not available from " + stores.getKey().get(0) + " to " + stores.getKey().get(1) + ", copying the files between them instead");
+                    }
+                    for (Path inputFile : batch) {
+                        Files.copy(inputFile, outputFolder.resolve(inputFile.getFileName().toString()), StandardCopyOption.REPLACE_EXISTING);
+                    }
+                }
+            }
+        }
+    }
+
+    private FileStore getFileStore(Path folder) throws IOException {
+        FileStore store = fileStores.get(folder);
+        if (store == null) {
+            store = Files.getFileStore(folder);
+            fileStores.put(folder, store);
+        }
+        return store;
+    }
+
+    // clones the given input files into the given output folder with one cp process, and returns whether it could
+    private boolean clone(List<Path> inputFiles, Path outputFolder) throws IOException {
+        List<String> arguments = new ArrayList<>(command);
+        for (Path inputFile : inputFiles) {
+            arguments.add(inputFile.toString());
+        }
+        arguments.add(outputFolder.toString());
+        try {
+            Process process = new ProcessBuilder(arguments).redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor() == 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package io.opencaesar.oml.merge;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class FileTableTests {
+
+    @Test
+    public void testPathTrie() {
+        PathTrie trie = new PathTrie();
+        int ab = trie.intern(Paths.get("A", "b"));
+        int ac = trie.intern(Paths.get("A", "c"));
+        Assert.assertEquals(ab, trie.intern(Paths.get("A", "b")));
+        Assert.assertNotEquals(ab, ac);
+        Assert.assertNotEquals(ab, trie.intern(Paths.get("b")));
+        Assert.assertEquals("A/b", trie.toString(ab));
+        Assert.assertEquals("A/c", trie.toString(ac));
+        Assert.assertEquals("", trie.toString(PathTrie.ROOT));
+        // the root, A, A/b, A/c and b
+        Assert.assertEquals(5, trie.size());
+    }
+
+    @Test
+    public void testPathTrieRehash() {
+        PathTrie trie = new PathTrie();
+        int[] nodes = new int[5000];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = trie.intern(Paths.get("F" + (i % 10), "f" + i));
+        }
+        for (int i = 0; i < nodes.length; i++) {
+            Assert.assertEquals(nodes[i], trie.intern(Paths.get("F" + (i % 10), "f" + i)));
+            Assert.assertEquals("F" + (i % 10) + "/f" + i, trie.toString(nodes[i]));
+        }
+    }
+
+    @Test
+    public void testGroupsByPathWithoutExtension() {
+        Path top = Paths.get("top");
+        FileTable table = new FileTable();
+        FileTable.Input input1 = table.addInput("input1", null);
+        input1.setTop(top);
+        input1.add(top.resolve("A/b.oml"), "oml", -1, 0);
+        input1.add(top.resolve("A/c.oml"), "oml", -1, 0);
+        FileTable.Input input2 = table.addInput("input2", null);
+        input2.setTop(top);
+        input2.add(top.resolve("A/b.omlxmi"), "omlxmi", -1, 0);
+        table.build();
+
+        int[] groups = table.getGroups();
+        Assert.assertEquals(2, groups.length);
+        Assert.assertEquals("A/b", table.getRelativePath(groups[0]));
+        Assert.assertEquals("A/b.oml", table.getRelativeFile(groups[0]));
+        int next = table.getNextFile(groups[0]);
+        Assert.assertEquals("A/b.omlxmi", table.getRelativeFile(next));
+        Assert.assertEquals("input2", table.getInputName(next));
+        Assert.assertEquals(-1, table.getNextFile(next));
+        Assert.assertEquals("A/c", table.getRelativePath(groups[1]));
+        Assert.assertEquals(-1, table.getNextFile(groups[1]));
+    }
+
+    @Test
+    public void testDifferentExtensionsAreDifferent() throws IOException {
+        Path top = Paths.get("top");
+        FileTable table = new FileTable();
+        FileTable.Input input1 = table.addInput("input1", top);
+        input1.setTop(top);
+        input1.add(top.resolve("A/b.oml"), "oml", 10, 42);
+        FileTable.Input input2 = table.addInput("input2", top);
+        input2.setTop(top);
+        input2.add(top.resolve("A/b.omlxmi"), "omlxmi", 10, 42);
+        table.build();
+
+        int first = table.getGroups()[0];
+        Assert.assertFalse(table.hasSameContents(first, table.getNextFile(first), null));
+    }
+
+    @Test
+    public void testSizeAndCrcFastPath() throws IOException {
+        Path folder = Files.createTempDirectory("oml-merge-file-table-");
+        try {
+            Files.write(folder.resolve("a.oml"), "abc".getBytes(StandardCharsets.UTF_8));
+            Files.write(folder.resolve("b.oml"), "abd".getBytes(StandardCharsets.UTF_8));
+
+            // zip entries with the same size and CRC-32 are equal without being read (the files do not exist)
+            Path top = folder.resolve("missing");
+            FileTable table = new FileTable();
+            for (int i = 0; i < 2; i++) {
+                FileTable.Input input = table.addInput("input" + i, top);
+                input.setTop(top);
+                input.add(top.resolve("A/b.oml"), "oml", 3, 42);
+            }
+            table.build();
+            int first = table.getGroups()[0];
+            Assert.assertTrue(table.hasSameContents(first, table.getNextFile(first), null));
+
+            // entries with the same size but different CRC-32s are compared by their hashes
+            table = new FileTable();
+            FileTable.Input input1 = table.addInput("input1", folder);
+            input1.setTop(folder);
+            input1.add(folder.resolve("a.oml"), "oml", 3, 1);
+            FileTable.Input input2 = table.addInput("input2", folder);
+            input2.setTop(folder);
+            input2.add(folder.resolve("a.oml"), "oml", 3, 2);
+            FileTable.Input input3 = table.addInput("input3", null);
+            input3.setTop(folder.resolve("other"));
+            Files.createDirectories(folder.resolve("other"));
+            Files.write(folder.resolve("other/a.oml"), "abd".getBytes(StandardCharsets.UTF_8));
+            input3.add(folder.resolve("other/a.oml"), "oml", -1, 0);
+            table.build();
+            first = table.getGroups()[0];
+            int second = table.getNextFile(first);
+            Assert.assertTrue(table.hasSameContents(first, second, null));
+            Assert.assertFalse(table.hasSameContents(first, table.getNextFile(second), null));
+        } finally {
+            try (var paths = Files.walk(folder)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+
+    @Test
+    public void testCompareReportsInputs() throws IOException {
+        Path folder = Files.createTempDirectory("oml-merge-file-table-");
+        try {
+            FileTable table = new FileTable();
+            String[] contents = { "abc", "abd", "abc", "abe", "abc" };
+            for (int i = 0; i < contents.length; i++) {
+                Path top = folder.resolve("input" + i);
+                Files.createDirectories(top);
+                Files.write(top.resolve("a.oml"), contents[i].getBytes(StandardCharsets.UTF_8));
+                FileTable.Input input = table.addInput("input" + i, null);
+                input.setTop(top);
+                input.add(top.resolve("a.oml"), "oml", -1, 0);
+            }
+            table.build();
+
+            OmlMergeApp.UniqueFile unique = table.compare(table.getGroups()[0], null);
+            Assert.assertNotNull(unique);
+            Assert.assertEquals("Different contents for path: a.oml\n"
+                    + "between 3 equivalent inputs and 2 different inputs.\n"
+                    + " equivalent content from: input0\n"
+                    + " equivalent content from: input2\n"
+                    + " equivalent content from: input4\n"
+                    + " different content from: input1\n"
+                    + " different content from: input3\n", unique.toError());
+
+            // a group without differences is not reported
+            table = new FileTable();
+            for (int i = 0; i < 2; i++) {
+                FileTable.Input input = table.addInput("input" + i, null);
+                input.setTop(folder.resolve("input0"));
+                input.add(folder.resolve("input0/a.oml"), "oml", -1, 0);
+            }
+            table.build();
+            Assert.assertNull(table.compare(table.getGroups()[0], null));
+        } finally {
+            try (var paths = Files.walk(folder)) {
+                paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package io.opencaesar.oml.merge;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class HashCacheTests {
+
+    private static final FileTime MODIFIED = FileTime.fromMillis(1600000000000L);
+
+    @Test
+    public void testReuseAndInvalidation() throws IOException {
+        Path folder = Files.createTempDirectory("oml-merge-hash-cache-");
+        try {
+            Path file = write(folder.resolve("a.oml"), "abc");
+            Path hashes = folder.resolve("hashes.bin");
+            HashCache cache = HashCache.load(hashes);
+            byte[] hash = cache.getFileHash(file);
+            Assert.assertArrayEquals(hash("abc"), hash);
+            cache.save();
+
+            // other contents with the same size and last-modified time are not hashed again
+            write(file, "xyz");
+            Assert.assertArrayEquals(hash, HashCache.load(hashes).getFileHash(file));
+
+            // a new last-modified time invalidates the entry
+            Files.setLastModifiedTime(file, FileTime.fromMillis(MODIFIED.toMillis() + 60000));
+            Assert.assertArrayEquals(hash("xyz"), HashCache.load(hashes).getFileHash(file));
+        } finally {
+            deleteDirectoryRecursively(folder);
+        }
+    }
+
+    @Test
+    public void testChangedArchiveIsHashedAgain() throws IOException {
+        Path folder = Files.createTempDirectory("oml-merge-hash-cache-");
+        try {
+            Path archive = folder.resolve("a.zip");
+            HashCache cache = HashCache.load(folder.resolve("hashes.bin"));
+            zip(archive, "abc");
+            Assert.assertArrayEquals(hash("abc"), getEntryHash(cache, archive));
+
+            // the same cache does not serve the entries of the previous archive
+            zip(archive, "xyz");
+            Files.setLastModifiedTime(archive, FileTime.fromMillis(MODIFIED.toMillis() + 60000));
+            Assert.assertArrayEquals(hash("xyz"), getEntryHash(cache, archive));
+        } finally {
+            deleteDirectoryRecursively(folder);
+        }
+    }
+
+    @Test
+    public void testCorruptCacheIsIgnored() throws IOException {
+        Path folder = Files.createTempDirectory("oml-merge-hash-cache-");
+        try {
+            Path file = write(folder.resolve("a.oml"), "abc");
+            Path hashes = folder.resolve("hashes.bin");
+            Files.write(hashes, new byte[] { 1, 2, 3 });
+            HashCache cache = HashCache.load(hashes);
+            Assert.assertArrayEquals(hash("abc"), cache.getFileHash(file));
+            cache.save();
+            write(file, "xyz");
+            Assert.assertArrayEquals(hash("abc"), HashCache.load(hashes).getFileHash(file));
+        } finally {
+            deleteDirectoryRecursively(folder);
+        }
+    }
+
+    @Test
+    public void testConcurrentSavesInOneProcess() throws Exception {
+        Path folder = Files.createTempDirectory("oml-merge-hash-cache-");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Path hashes = folder.resolve("hashes.bin");
+            List<Path> files = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                files.add(write(folder.resolve(i + ".oml"), "abc" + i));
+            }
+            List<Future<?>> futures = new ArrayList<>();
+            for (Path file : files) {
+                futures.add(executor.submit(() -> {
+                    HashCache cache = HashCache.load(hashes);
+                    cache.getFileHash(file);
+                    cache.save();
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            // the entries of all the saves are kept
+            for (int i = 0; i < files.size(); i++) {
+                write(files.get(i), "xyz" + i);
+                Assert.assertArrayEquals(hash("abc" + i), HashCache.load(hashes).getFileHash(files.get(i)));
+            }
+        } finally {
+            executor.shutdownNow();
+            deleteDirectoryRecursively(folder);
+        }
+    }
+
+    private static Path write(Path file, String contents) throws IOException {
+        Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(file, MODIFIED);
+        return file;
+    }
+
+    // writes a zip archive with an entry a.oml of the given contents
+    private static void zip(Path archive, String contents) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry("a.oml"));
+            zip.write(contents.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        Files.setLastModifiedTime(archive, MODIFIED);
+    }
+
+    private static byte[] getEntryHash(HashCache cache, Path archive) throws IOException {
+        try (FileSystem zip = FileSystems.newFileSystem(archive)) {
+            return cache.getEntryHash(archive, "a.oml", zip.getPath("a.oml"));
+        }
+    }
+
+    private static byte[] hash(String contents) throws IOException {
+        return OmlMergeApp.normalizedHash(new ByteArrayInputStream(contents.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static void deleteDirectoryRecursively(Path folder) throws IOException {
+        try (var paths = Files.walk(folder)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(p -> p.toFile().delete());
+        }
+    }
+}
@@ -1,14 +1,22 @@
 package io.opencaesar.oml.merge.tests;
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 import org.junit.AfterClass;
 import org.junit.Assert;
@@ -16,6 +24,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import com.beust.jcommander.JCommander;
+import com.beust.jcommander.ParameterException;
 
 import io.opencaesar.oml.merge.OmlMergeApp;
 
@@ -124,6 +133,34 @@ public class OmlMergeTests {
         Assert.assertTrue(resultPaths.size() == 7);
     }
 
+    @Test
+    public void testMergeDifferentFoldersInParallel() throws IOException {
+        OmlMergeApp app = new OmlMergeApp();
+        final JCommander builder = JCommander.newBuilder().addObject(app).build();
+        builder.parse("-f", test2_folder1.toFile().getAbsolutePath(), "-f", test2_folder2.toFile().getAbsolutePath(), "-o", test2_output.toFile().getAbsolutePath(), "-g", "-t", "4");
+        List<OmlMergeApp.UniqueFile> differences = app.run();
+        Assert.assertTrue(differences.size() == 1);
+        Assert.assertTrue(differences.get(0).toError().contains("equivalent content from: " + test2_folder1.toFile().getAbsolutePath()));
+        Set<Path> resultPaths = Files.walk(test2_output).collect(Collectors.toSet());
+        Assert.assertTrue(resultPaths.size() == 7);
+    }
+
+    @Test
+    public void testMergeDifferentFoldersFailFast() throws IOException {
+        Path output = Files.createTempDirectory("oml-merge-fail-fast-");
+        try {
+            OmlMergeApp app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-f", test2_folder1.toFile().getAbsolutePath(),
+                    "-f", test2_folder2.toFile().getAbsolutePath(),
+                    "-o", output.toFile().getAbsolutePath(), "-s");
+            Assert.assertTrue(app.run().size() == 1);
+            Assert.assertTrue(Files.list(output).findAny().isEmpty());
+        } finally {
+            deleteDirectoryRecursively(output.toFile());
+        }
+    }
+
     @Test
     public void testMergeIdenticalFolderAndZip() throws IOException {
         OmlMergeApp app = new OmlMergeApp();
@@ -146,6 +183,234 @@ public class OmlMergeTests {
         Assert.assertTrue(resultPaths.size() == 7);
     }
     
+    @Test
+    public void testMergeZips() throws IOException {
+        Path output = Files.createTempDirectory("oml-merge-test34-");
+        try {
+            OmlMergeApp app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-z", test3_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                    "-z", test3_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                    "-o", output.toFile().getAbsolutePath());
+            Assert.assertTrue(app.run().isEmpty());
+
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-z", test3_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                    "-z", test4_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                    "-o", output.toFile().getAbsolutePath());
+            Assert.assertTrue(app.run().size() == 1);
+        } finally {
+            deleteDirectoryRecursively(output.toFile());
+        }
+    }
+
+    @Test
+    public void testMergeWithHashCache() throws Exception {
+        Path cache = Files.createTempDirectory("oml-merge-cache-");
+        Path input = Files.createTempDirectory("oml-merge-cache-input-");
+        try {
+            input.resolve("A/B").toFile().mkdirs();
+            input.resolve("C").toFile().mkdirs();
+            Files.copy(test2_folder1.resolve("A/B/c.oml"), input.resolve("A/B/c.oml"));
+            Files.copy(test2_folder1.resolve("C/d.oml"), input.resolve("C/d.oml"));
+            Path hashes = cache.resolve("hashes.bin");
+
+            String equivalent = "equivalent content from: " + input.toFile().getAbsolutePath();
+            String different = "different content from: " + input.toFile().getAbsolutePath();
+            Assert.assertTrue(mergeWithHashCache(input, hashes).contains(equivalent));
+            Assert.assertTrue(Files.exists(hashes));
+            byte[] saved = Files.readAllBytes(hashes);
+            FileTime modified = Files.getLastModifiedTime(hashes);
+
+            // a second run reuses all the entries, so the cache is not saved again
+            Thread.sleep(10);
+            Assert.assertTrue(mergeWithHashCache(input, hashes).contains(equivalent));
+            Assert.assertArrayEquals(saved, Files.readAllBytes(hashes));
+            Assert.assertEquals(modified, Files.getLastModifiedTime(hashes));
+
+            // an edited file invalidates its entry, so it is hashed and saved again
+            Files.write(input.resolve("A/B/c.oml"), Files.readAllBytes(test2_folder2.resolve("A/B/c.oml")));
+            Files.setLastModifiedTime(input.resolve("A/B/c.oml"), FileTime.fromMillis(modified.toMillis() + 60000));
+            Assert.assertTrue(mergeWithHashCache(input, hashes).contains(different));
+            Assert.assertFalse(Arrays.equals(saved, Files.readAllBytes(hashes)));
+        } finally {
+            deleteDirectoryRecursively(cache.toFile());
+            deleteDirectoryRecursively(input.toFile());
+        }
+    }
+
+    private String mergeWithHashCache(Path input, Path hashes) throws IOException {
+        OmlMergeApp app = new OmlMergeApp();
+        JCommander.newBuilder().addObject(app).build().parse(
+                "-f", input.toFile().getAbsolutePath(),
+                "-f", test2_folder2.toFile().getAbsolutePath(),
+                "-z", test3_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                "-o", test2_output.toFile().getAbsolutePath(),
+                "-k", hashes.toFile().getAbsolutePath());
+        List<OmlMergeApp.UniqueFile> differences = app.run();
+        Assert.assertEquals(1, differences.size());
+        return differences.get(0).toError();
+    }
+
+    @Test
+    public void testIncrementalMerge() throws Exception {
+        Path input = Files.createTempDirectory("oml-merge-incremental-input-");
+        Path output = Files.createTempDirectory("oml-merge-incremental-output-");
+        try {
+            input.resolve("A/B").toFile().mkdirs();
+            input.resolve("C").toFile().mkdirs();
+            Files.copy(test1_folder1.resolve("A/B/c.oml"), input.resolve("A/B/c.oml"));
+            Files.copy(test1_folder1.resolve("C/d.oml"), input.resolve("C/d.oml"));
+
+            OmlMergeApp app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse("-f", input.toFile().getAbsolutePath(), "-o", output.toFile().getAbsolutePath(), "-g", "-n");
+            Assert.assertTrue(app.run().isEmpty());
+            FileTime modified = Files.getLastModifiedTime(output.resolve("A/B/c.oml"));
+
+            // an unchanged input leaves the output untouched
+            Thread.sleep(10);
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse("-f", input.toFile().getAbsolutePath(), "-o", output.toFile().getAbsolutePath(), "-g", "-n");
+            Assert.assertTrue(app.run().isEmpty());
+            Assert.assertEquals(modified, Files.getLastModifiedTime(output.resolve("A/B/c.oml")));
+
+            // an input whose line endings changed, with the same normalized hash and size, is written again
+            Files.write(input.resolve("A/B/c.oml"), "a\r\nb\n".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(input.resolve("A/B/c.oml"), FileTime.fromMillis(1600000000000L));
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse("-f", input.toFile().getAbsolutePath(), "-o", output.toFile().getAbsolutePath(), "-g", "-n");
+            Assert.assertTrue(app.run().isEmpty());
+            Files.write(input.resolve("A/B/c.oml"), "a\nb\r\n".getBytes(StandardCharsets.UTF_8));
+            Files.setLastModifiedTime(input.resolve("A/B/c.oml"), FileTime.fromMillis(1600000060000L));
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse("-f", input.toFile().getAbsolutePath(), "-o", output.toFile().getAbsolutePath(), "-g", "-n");
+            Assert.assertTrue(app.run().isEmpty());
+            Assert.assertEquals("a\nb\r\n", Files.readString(output.resolve("A/B/c.oml"), StandardCharsets.UTF_8));
+            modified = Files.getLastModifiedTime(output.resolve("A/B/c.oml"));
+
+            // a file removed from the input is removed from the output
+            deleteDirectoryRecursively(input.resolve("C").toFile());
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse("-f", input.toFile().getAbsolutePath(), "-o", output.toFile().getAbsolutePath(), "-g", "-n");
+            Assert.assertTrue(app.run().isEmpty());
+            Assert.assertFalse(Files.exists(output.resolve("C")));
+            Assert.assertEquals(modified, Files.getLastModifiedTime(output.resolve("A/B/c.oml")));
+        } finally {
+            deleteDirectoryRecursively(input.toFile());
+            deleteDirectoryRecursively(output.toFile());
+        }
+    }
+
+    @Test
+    public void testOutputModes() throws IOException {
+        for (String mode : new String[] { "copy", "hardlink", "symlink", "reflink-if-available" }) {
+            Path output = Files.createTempDirectory("oml-merge-" + mode + "-");
+            try {
+                OmlMergeApp app = new OmlMergeApp();
+                JCommander.newBuilder().addObject(app).build().parse(
+                        "-f", test1_folder1.toFile().getAbsolutePath(),
+                        "-f", test1_folder2.toFile().getAbsolutePath(),
+                        "-o", output.toFile().getAbsolutePath(), "-m", mode);
+                Assert.assertTrue(app.run().isEmpty());
+                Assert.assertArrayEquals(Files.readAllBytes(test1_folder1.resolve("A/B/c.oml")), Files.readAllBytes(output.resolve("A/B/c.oml")));
+                Assert.assertArrayEquals(Files.readAllBytes(test1_folder1.resolve("C/d.oml")), Files.readAllBytes(output.resolve("C/d.oml")));
+            } finally {
+                deleteDirectoryRecursively(output.toFile());
+            }
+        }
+    }
+
+    @Test
+    public void testIncrementalReflinkMerge() throws IOException {
+        Path output = Files.createTempDirectory("oml-merge-incremental-reflink-");
+        try {
+            // the reflinks are made (or the files copied) after the files are recorded to the manifest
+            OmlMergeApp app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-f", test1_folder1.toFile().getAbsolutePath(),
+                    "-o", output.toFile().getAbsolutePath(), "-n", "-m", "reflink-if-available");
+            Assert.assertTrue(app.run().isEmpty());
+            Assert.assertArrayEquals(Files.readAllBytes(test1_folder1.resolve("A/B/c.oml")), Files.readAllBytes(output.resolve("A/B/c.oml")));
+            FileTime modified = Files.getLastModifiedTime(output.resolve("A/B/c.oml"));
+
+            app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-f", test1_folder1.toFile().getAbsolutePath(),
+                    "-o", output.toFile().getAbsolutePath(), "-n", "-m", "reflink-if-available");
+            Assert.assertTrue(app.run().isEmpty());
+            Assert.assertEquals(modified, Files.getLastModifiedTime(output.resolve("A/B/c.oml")));
+        } finally {
+            deleteDirectoryRecursively(output.toFile());
+        }
+    }
+
+    @Test
+    public void testMergeIntoZip() throws IOException {
+        for (String level : new String[] { "stored", "6" }) {
+            Path output = Files.createTempDirectory("oml-merge-zip-" + level + "-");
+            try {
+                Path outputZip = output.resolve("merged.zip");
+                OmlMergeApp app = new OmlMergeApp();
+                JCommander.newBuilder().addObject(app).build().parse(
+                        "-f", test1_folder1.toFile().getAbsolutePath(),
+                        "-z", test3_folder2.resolve("folder2.zip").toFile().getAbsolutePath(),
+                        "-a", outputZip.toFile().getAbsolutePath(), "-l", level, "-g");
+                app.run();
+                try (ZipFile zip = new ZipFile(outputZip.toFile())) {
+                    List<String> names = zip.stream().map(ZipEntry::getName).collect(Collectors.toList());
+                    Assert.assertEquals("catalog.xml", names.get(0));
+                    Assert.assertArrayEquals(Files.readAllBytes(test1_folder1.resolve("A/B/c.oml")), zip.getInputStream(zip.getEntry("A/B/c.oml")).readAllBytes());
+                    for (ZipEntry entry : Collections.list(zip.entries())) {
+                        Assert.assertEquals("stored".equals(level) ? ZipEntry.STORED : ZipEntry.DEFLATED, entry.getMethod());
+                    }
+                }
+
+                // the merged archive merges cleanly with its folder input
+                app = new OmlMergeApp();
+                JCommander.newBuilder().addObject(app).build().parse(
+                        "-z", outputZip.toFile().getAbsolutePath(),
+                        "-f", test1_folder1.toFile().getAbsolutePath(),
+                        "-a", output.resolve("remerged.zip").toFile().getAbsolutePath(), "-l", level);
+                Assert.assertTrue(app.run().isEmpty());
+            } finally {
+                deleteDirectoryRecursively(output.toFile());
+            }
+        }
+    }
+
+    @Test
+    public void testOutputZipPathValidation() throws IOException {
+        Path output = Files.createTempDirectory("oml-merge-zip-path-");
+        try {
+            // the folders of the archive are created, but a folder is not an archive
+            new OmlMergeApp.OutputZipPath().validate("-a", output.resolve("a/b/merged.zip").toString());
+            Assert.assertTrue(Files.isDirectory(output.resolve("a/b")));
+            try {
+                new OmlMergeApp.OutputZipPath().validate("-a", output.toString());
+                Assert.fail("a folder is accepted as an output zip");
+            } catch (ParameterException e) {
+                // expected
+            }
+
+            // an output zip cannot be combined with an output folder
+            OmlMergeApp app = new OmlMergeApp();
+            JCommander.newBuilder().addObject(app).build().parse(
+                    "-f", test1_folder1.toFile().getAbsolutePath(),
+                    "-o", output.resolve("merged").toFile().getAbsolutePath(),
+                    "-a", output.resolve("merged.zip").toFile().getAbsolutePath());
+            try {
+                app.run();
+                Assert.fail("an output zip is accepted along with an output folder");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+            Assert.assertFalse(Files.exists(output.resolve("merged.zip")));
+        } finally {
+            deleteDirectoryRecursively(output.toFile());
+        }
+    }
+
     @Test
     public void testNormalizedHash() throws IOException {
         Assert.assertEquals(normalizedHash("a"), normalizedHash("a"));
@@ -154,6 +419,40 @@ public class OmlMergeTests {
         Assert.assertEquals(normalizedHash("\na\nb\n"), normalizedHash("\ra\rb\r"));
     }
     
+    @Test
+    public void testNormalizedHashAcrossBlocks() throws Exception {
+        // line endings straddling the boundaries of the hashing buffer
+        Random random = new Random(42);
+        byte[] alphabet = { 'a', 'b', '\r', '\n' };
+        for (int size : new int[] { 64 * 1024 - 1, 64 * 1024, 64 * 1024 + 1, 300 * 1024 }) {
+            byte[] input = new byte[size];
+            for (int i = 0; i < size; i++) {
+                input[i] = alphabet[random.nextInt(alphabet.length)];
+            }
+            if (size > 64 * 1024) {
+                input[64 * 1024 - 1] = '\r';
+                input[64 * 1024] = '\n';
+            }
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(normalize(input));
+            Assert.assertArrayEquals(expected, OmlMergeApp.normalizedHash(new ByteArrayInputStream(input)));
+        }
+    }
+
+    private static byte[] normalize(byte[] input) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < input.length; i++) {
+            if (input[i] == '\r') {
+                out.write('\n');
+                if (i + 1 < input.length && input[i + 1] == '\n') {
+                    i++;
+                }
+            } else {
+                out.write(input[i]);
+            }
+        }
+        return out.toByteArray();
+    }
+
     private ByteBuffer normalizedHash(String input) throws IOException {
         return ByteBuffer.wrap(OmlMergeApp.normalizedHash(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8))));
     }
@@ -29,10 +29,12 @@ import org.eclipse.emf.common.util.URI;
 import org.gradle.api.DefaultTask;
 import org.gradle.api.file.ConfigurableFileCollection;
 import org.gradle.api.file.RegularFileProperty;
+import org.gradle.api.provider.ListProperty;
 import org.gradle.api.provider.Property;
 import org.gradle.api.tasks.Input;
 import org.gradle.api.tasks.InputFile;
 import org.gradle.api.tasks.InputFiles;
+import org.gradle.api.tasks.Internal;
 import org.gradle.api.tasks.Optional;
 import org.gradle.api.tasks.OutputFile;
 import org.gradle.api.tasks.TaskAction;
@@ -58,6 +60,15 @@ public abstract class OmlValidateTask extends DefaultTask {
     @InputFile
     public abstract Property<File> getInputCatalogPath();
 
+	/**
+	 * The IRIs of root OML ontologies, whose import closure is validated instead of the whole catalog.
+	 * 
+	 * @return List of Strings Property
+	 */
+    @Optional
+    @Input
+    public abstract ListProperty<String> getRootOntologyIris();
+
 	/**
 	 * The path of output report file.
 	 * 
@@ -66,6 +77,53 @@ public abstract class OmlValidateTask extends DefaultTask {
     @OutputFile
     public abstract RegularFileProperty getOutputReportPath();
 
+	/**
+	 * The format of the output report file (text, jsonl or sarif).
+	 * 
+	 * @return String Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<String> getOutputReportFormat();
+
+	/**
+	 * The number of threads used to load and validate the ontologies.
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<Integer> getThreads();
+
+	/**
+	 * The maximum number of errors, after which no more ontologies are validated.
+	 * 
+	 * @return Integer Property
+	 */
+    @Optional
+    @Input
+    public abstract Property<Integer> getMaxErrors();
+
+	/**
+	 * The path of a file caching the validation results between builds, so only the changed ontologies
+	 * and those importing them are validated again.
+	 * 
+	 * @return File Property
+	 */
+    @Internal
+    @Optional
+    public abstract Property<File> getValidationCache();
+
+	/**
+	 * The path of a JSON file to write the time spent loading and validating each ontology, and by each
+	 * validator on each class, to.
+	 * 
+	 * @return File Property
+	 */
+    @Internal
+    @Optional
+    public abstract Property<File> getProfile();
+
 	/**
 	 * Whether to show debug logging statements.
 	 * 
@@ -104,10 +162,36 @@ public abstract class OmlValidateTask extends DefaultTask {
 			args.add("-i");
 			args.add(getInputCatalogPath().get().getAbsolutePath());
 		}
+		if (getRootOntologyIris().isPresent()) {
+			for (String rootOntologyIri : getRootOntologyIris().get()) {
+				args.add("-r");
+				args.add(rootOntologyIri);
+			}
+		}
 		if (getOutputReportPath().isPresent()) {
 			args.add("-o");
 			args.add(getOutputReportPath().get().getAsFile().getAbsolutePath());
 		}
+		if (getOutputReportFormat().isPresent()) {
+			args.add("-f");
+			args.add(getOutputReportFormat().get());
+		}
+		if (getThreads().isPresent()) {
+			args.add("-t");
+			args.add(getThreads().get().toString());
+		}
+		if (getMaxErrors().isPresent()) {
+			args.add("-m");
+			args.add(getMaxErrors().get().toString());
+		}
+		if (getValidationCache().isPresent()) {
+			args.add("-c");
+			args.add(getValidationCache().get().getAbsolutePath());
+		}
+		if (getProfile().isPresent()) {
+			args.add("-p");
+			args.add(getProfile().get().getAbsolutePath());
+		}
 		if (getDebug().isPresent() && getDebug().get()) {
 			args.add("-d");
 		}
@@ -0,0 +1,399 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * A cache of values computed from the OML files of a catalog, which is persisted between runs.
+ *
+ * For each file, the cache keeps the hash of its contents, the files in its import closure, and the
+ * value computed from it. A file is outdated when its contents or those of a file in its import closure
+ * changed (or that file was removed from the catalog), or when its value is no longer current. All the
+ * files are outdated when the key of the cache (e.g., a hash of the catalog and of the settings) changed.
+ *
+ * The size and last-modified time of each file are also kept, so a file whose size and last-modified
+ * time are unchanged is not hashed again. A file modified shortly before it was hashed is hashed again
+ * next time regardless, since it may have changed again within the granularity of its last-modified time.
+ *
+ * @param <T> the type of the values computed from the files
+ */
+public abstract class DependencyCache<T> {
+
+	private static final int HASH_LENGTH = 32;
+
+	// the files modified less than this before they are hashed are hashed again next time
+	private static final long RACY_MILLIS = 2000;
+
+	private static final Logger LOGGER = LogManager.getLogger(DependencyCache.class);
+
+	private final Path path;
+	private final int magic;
+	private final int version;
+	private String key;
+	private final Map<String, Entry<T>> entries = new HashMap<>();
+	private final Map<String, Stamp> currentStamps = new HashMap<>();
+
+	/**
+	 * Creates a new empty cache persisted to the given path
+	 *
+	 * @param path the path of the cache file
+	 * @param magic the number identifying the kind of cache file
+	 * @param version the version of the format of the values in the cache file
+	 */
+	protected DependencyCache(Path path, int magic, int version) {
+		this.path = path;
+		this.magic = magic;
+		this.version = version;
+	}
+
+	/**
+	 * Reads the entries of this cache from its file, if there is a (readable) one
+	 */
+	protected void load() {
+		if (Files.exists(path)) {
+			try {
+				read();
+			} catch (IOException e) {
+				LOGGER.warn("Ignoring unreadable cache " + path + ": " + e.getMessage());
+				key = null;
+				entries.clear();
+			}
+		}
+	}
+
+	/**
+	 * Returns the URIs of the given files that are outdated, in order
+	 *
+	 * @param key the key of the cache, whose change makes all the files outdated
+	 * @param uris the URIs of the files of the catalog
+	 * @return the URIs of the outdated files
+	 * @throws IOException error
+	 */
+	protected List<URI> getOutdatedUris(String key, List<URI> uris) throws IOException {
+		boolean keyChanged = !key.equals(this.key);
+		this.key = key;
+
+		// the files that changed, were added or were removed since the last run
+		Set<String> changed = new HashSet<>(entries.keySet());
+		for (URI uri : uris) {
+			String file = uri.toFileString();
+			Entry<T> entry = entries.get(file);
+			Stamp stamp = Stamp.of(new File(file).toPath(), entry != null ? entry.stamp : null);
+			currentStamps.put(file, stamp);
+			if (entry != null && Arrays.equals(entry.stamp.hash, stamp.hash)) {
+				if (entry.stamp != stamp) {
+					entries.put(file, new Entry<>(stamp, entry.imports, entry.value));
+				}
+				changed.remove(file);
+			} else {
+				changed.add(file);
+			}
+		}
+
+		List<URI> outdated = new ArrayList<>();
+		for (URI uri : uris) {
+			String file = uri.toFileString();
+			Entry<T> entry = entries.get(file);
+			if (keyChanged || changed.contains(file) || !isCurrent(entry.value) || entry.imports.stream().anyMatch(changed::contains)) {
+				outdated.add(uri);
+			}
+		}
+		return outdated;
+	}
+
+	/**
+	 * Returns whether the given value, computed from a file that did not change, is still current
+	 *
+	 * @param value the value of a file
+	 * @return whether the value is current (by default, true)
+	 */
+	protected boolean isCurrent(T value) {
+		return true;
+	}
+
+	/**
+	 * Returns the value of the given file
+	 *
+	 * @param uri the URI of the file
+	 * @return the value, or null if the file has none
+	 */
+	protected T get(URI uri) {
+		Entry<T> entry = entries.get(uri.toFileString());
+		return (entry != null) ? entry.value : null;
+	}
+
+	/**
+	 * Records the value computed from the given file
+	 *
+	 * @param uri the URI of the file
+	 * @param value the value of the file
+	 * @param imports the URIs of the files in the import closure of the file
+	 */
+	protected void record(URI uri, T value, Collection<URI> imports) {
+		String file = uri.toFileString();
+		List<String> importFiles = new ArrayList<>();
+		for (URI i : imports) {
+			if (i.isFile()) {
+				importFiles.add(i.toFileString());
+			}
+		}
+		entries.put(file, new Entry<>(currentStamps.get(file), importFiles, value));
+	}
+
+	/**
+	 * Removes the value of the given file, so it is outdated next time
+	 *
+	 * @param uri the URI of the file
+	 */
+	public void remove(URI uri) {
+		entries.remove(uri.toFileString());
+	}
+
+	/**
+	 * Removes the entries of the files that were removed from the catalog
+	 *
+	 * @return the values of the removed files
+	 */
+	protected List<T> removeDeletedFiles() {
+		List<T> removed = new ArrayList<>();
+		entries.entrySet().removeIf(e -> {
+			if (!currentStamps.containsKey(e.getKey())) {
+				removed.add(e.getValue().value);
+				return true;
+			}
+			return false;
+		});
+		return removed;
+	}
+
+	/**
+	 * Returns the values of the files of the catalog
+	 *
+	 * @return the values by file path
+	 */
+	protected Map<String, T> getValues() {
+		Map<String, T> values = new LinkedHashMap<>();
+		for (Map.Entry<String, Entry<T>> e : entries.entrySet()) {
+			if (currentStamps.containsKey(e.getKey())) {
+				values.put(e.getKey(), e.getValue().value);
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Saves the entries of the files of the catalog to this cache's file
+	 *
+	 * @throws IOException error
+	 */
+	public void save() throws IOException {
+		entries.keySet().retainAll(currentStamps.keySet());
+		Path parent = path.toAbsolutePath().getParent();
+		Files.createDirectories(parent);
+		Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+		try {
+			write(temp);
+			try {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Reads a value from the cache file
+	 *
+	 * @param in the input of the cache file
+	 * @return the value
+	 * @throws IOException error
+	 */
+	protected abstract T readValue(DataInputStream in) throws IOException;
+
+	/**
+	 * Writes a value to the cache file
+	 *
+	 * @param out the output of the cache file
+	 * @param value the value
+	 * @throws IOException error
+	 */
+	protected abstract void writeValue(DataOutputStream out, T value) throws IOException;
+
+	private void read() throws IOException {
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != magic || in.readInt() != version) {
+				throw new IOException("unsupported format");
+			}
+			key = readString(in);
+			int entryCount = in.readInt();
+			for (int i = 0; i < entryCount; i++) {
+				String file = in.readUTF();
+				byte[] hash = new byte[HASH_LENGTH];
+				in.readFully(hash);
+				Stamp stamp = new Stamp(hash, in.readLong(), in.readLong());
+				int importCount = in.readInt();
+				List<String> imports = new ArrayList<>(importCount);
+				for (int j = 0; j < importCount; j++) {
+					imports.add(in.readUTF());
+				}
+				entries.put(file, new Entry<>(stamp, imports, readValue(in)));
+			}
+		}
+	}
+
+	private void write(Path file) throws IOException {
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+			out.writeInt(magic);
+			out.writeInt(version);
+			writeString(out, key);
+			out.writeInt(entries.size());
+			for (Map.Entry<String, Entry<T>> e : entries.entrySet()) {
+				out.writeUTF(e.getKey());
+				out.write(e.getValue().stamp.hash);
+				out.writeLong(e.getValue().stamp.size);
+				out.writeLong(e.getValue().stamp.lastModified);
+				out.writeInt(e.getValue().imports.size());
+				for (String i : e.getValue().imports) {
+					out.writeUTF(i);
+				}
+				writeValue(out, e.getValue().value);
+			}
+		}
+	}
+
+	/**
+	 * Reads a string of any length (unlike {@link DataInputStream#readUTF()})
+	 *
+	 * @param in the input
+	 * @return the string
+	 * @throws IOException error
+	 */
+	protected static String readString(DataInputStream in) throws IOException {
+		byte[] bytes = new byte[in.readInt()];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Writes a string of any length (unlike {@link DataOutputStream#writeUTF(String)})
+	 *
+	 * @param out the output
+	 * @param value the string
+	 * @throws IOException error
+	 */
+	protected static void writeString(DataOutputStream out, String value) throws IOException {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	/**
+	 * Returns the SHA-256 hash of the contents of the given file
+	 *
+	 * @param file the file
+	 * @return the hash
+	 * @throws IOException error
+	 */
+	public static byte[] hash(Path file) throws IOException {
+		try (InputStream is = Files.newInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			byte[] buffer = new byte[64 * 1024];
+			int len;
+			while ((len = is.read(buffer)) != -1) {
+				digest.update(buffer, 0, len);
+			}
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * The hash of a file's contents, and the size and last-modified time (or 0 if unreliable) it was hashed with
+	 */
+	private static final class Stamp {
+		private final byte[] hash;
+		private final long size;
+		private final long lastModified;
+
+		private Stamp(byte[] hash, long size, long lastModified) {
+			this.hash = hash;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		// reuses the given previous stamp of the file if its size and last-modified time are unchanged
+		private static Stamp of(Path file, Stamp previous) throws IOException {
+			BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+			long size = attributes.size();
+			long lastModified = attributes.lastModifiedTime().toMillis();
+			if (previous != null && previous.lastModified != 0 && previous.size == size && previous.lastModified == lastModified) {
+				return previous;
+			}
+			long now = System.currentTimeMillis();
+			byte[] hash = hash(file);
+			return new Stamp(hash, size, (lastModified < now - RACY_MILLIS) ? lastModified : 0);
+		}
+	}
+
+	/**
+	 * The cached value of a file
+	 */
+	private static final class Entry<T> {
+		private final Stamp stamp;
+		private final List<String> imports;
+		private final T value;
+
+		private Entry(Stamp stamp, List<String> imports, T value) {
+			this.stamp = stamp;
+			this.imports = imports;
+			this.value = value;
+		}
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.eclipse.emf.common.util.URI;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
+
+import io.opencaesar.oml.util.OmlResolve;
+
+/**
+ * An index of the OML files of a catalog, which saves resolving the catalog and walking its
+ * folders again each time the files are needed.
+ *
+ * The indexes of the most recently used catalogs are kept in memory for the rest of the process
+ * (e.g., a Gradle daemon or a validation in watch mode), and nothing is written to the catalog's
+ * folders, so a run from the command line resolves its catalog once like before. An index stays valid as
+ * long as the contents of the catalog (and of its nested catalogs) and the last-modified times of
+ * the folders its URIs are rewritten to are unchanged: adding, removing or renaming a file or folder
+ * changes the last-modified time of the folder containing it. An index is not reused while one of
+ * its folders was modified shortly before the index was created, since that folder may have changed
+ * again within the granularity of its last-modified time.
+ */
+public class OmlCatalogIndex {
+
+	// the folders modified less than this before an index is created make the index unreliable
+	private static final long RACY_MILLIS = 2000;
+
+	// the number of catalogs whose indexes are kept, the least recently used ones being dropped
+	private static final int MAX_INDEXES = 16;
+
+	private static final Map<String, OmlCatalogIndex> INDEXES = Collections.synchronizedMap(new LinkedHashMap<String, OmlCatalogIndex>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, OmlCatalogIndex> eldest) {
+			return size() > MAX_INDEXES;
+		}
+	});
+
+	private final Map<String, byte[]> catalogs;
+	private final Map<String, Long> folders;
+	private final List<URI> fileUris;
+	private final long created;
+
+	private OmlCatalogIndex(Map<String, byte[]> catalogs, Map<String, Long> folders, List<URI> fileUris, long created) {
+		this.catalogs = catalogs;
+		this.folders = folders;
+		this.fileUris = fileUris;
+		this.created = created;
+	}
+
+	/**
+	 * Returns the URIs of the OML files referenced by the given catalog, as resolved by
+	 * {@link OmlResolve#resolveOmlFileUris(URI)}
+	 *
+	 * @param catalogUri the URI of an OML catalog file
+	 * @return List of URIs
+	 * @throws IOException error
+	 */
+	public static List<URI> resolveOmlFileUris(URI catalogUri) throws IOException {
+		return new ArrayList<>(get(catalogUri).fileUris);
+	}
+
+	/**
+	 * Returns the folders of the given catalog (and of its nested catalogs) and the folders their URIs
+	 * are rewritten to, where the OML files referenced by the catalog are added, removed or changed
+	 *
+	 * @param catalogUri the URI of an OML catalog file
+	 * @return Set of folder paths
+	 * @throws IOException error
+	 */
+	static Set<Path> resolveFolders(URI catalogUri) throws IOException {
+		final OmlCatalogIndex index = get(catalogUri);
+		final Set<Path> folders = new LinkedHashSet<>();
+		for (String catalog : index.catalogs.keySet()) {
+			folders.add(Paths.get(catalog).getParent());
+		}
+		for (String folder : index.folders.keySet()) {
+			folders.add(Paths.get(folder));
+		}
+		return folders;
+	}
+
+	private static OmlCatalogIndex get(URI catalogUri) throws IOException {
+		final File catalogFile = new File(catalogUri.toFileString()).getAbsoluteFile();
+		OmlCatalogIndex index = INDEXES.get(catalogFile.getPath());
+		if (index == null || !index.isValid()) {
+			index = create(catalogUri, catalogFile);
+			INDEXES.put(catalogFile.getPath(), index);
+		}
+		return index;
+	}
+
+	private static OmlCatalogIndex create(URI catalogUri, File catalogFile) throws IOException {
+		final long created = System.currentTimeMillis();
+		final List<URI> fileUris = new ArrayList<>(OmlResolve.resolveOmlFileUris(catalogUri));
+
+		// the catalogs and the folders their URIs are rewritten to
+		final Map<String, byte[]> catalogs = new LinkedHashMap<>();
+		final List<Path> roots = new ArrayList<>();
+		collectCatalogs(catalogFile, catalogs, roots);
+
+		// the folders under those, and the folders of the files outside of them
+		final Map<String, Long> folders = new LinkedHashMap<>();
+		for (Path root : roots) {
+			if (Files.isDirectory(root) && !folders.containsKey(root.toString())) {
+				Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+					@Override
+					public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+						// like OmlResolve, hidden folders are not skipped
+						folders.put(dir.toString(), attributes.lastModifiedTime().toMillis());
+						return FileVisitResult.CONTINUE;
+					}
+				});
+			}
+		}
+		for (URI uri : fileUris) {
+			if (uri.isFile()) {
+				final File folder = new File(uri.toFileString()).getAbsoluteFile().getParentFile();
+				folders.putIfAbsent(folder.getPath(), folder.lastModified());
+			}
+		}
+		return new OmlCatalogIndex(catalogs, folders, Collections.unmodifiableList(fileUris), created);
+	}
+
+	private static void collectCatalogs(File catalogFile, Map<String, byte[]> catalogs, List<Path> roots) throws IOException {
+		if (catalogs.containsKey(catalogFile.getPath())) {
+			return;
+		}
+		catalogs.put(catalogFile.getPath(), DependencyCache.hash(catalogFile.toPath()));
+		final Path folder = catalogFile.toPath().getParent();
+		final Document document;
+		try {
+			document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(catalogFile);
+		} catch (ParserConfigurationException | SAXException e) {
+			throw new IOException("Cannot parse catalog " + catalogFile, e);
+		}
+		final NodeList rewrites = document.getElementsByTagName("rewriteURI");
+		for (int i = 0; i < rewrites.getLength(); i++) {
+			final Path prefix = resolve(folder, ((Element) rewrites.item(i)).getAttribute("rewritePrefix"));
+			final Path root = Files.isDirectory(prefix) ? prefix : prefix.getParent();
+			if (root != null) {
+				roots.add(root);
+			}
+		}
+		final NodeList nextCatalogs = document.getElementsByTagName("nextCatalog");
+		for (int i = 0; i < nextCatalogs.getLength(); i++) {
+			final Path nextCatalog = resolve(folder, ((Element) nextCatalogs.item(i)).getAttribute("catalog"));
+			collectCatalogs(nextCatalog.toFile(), catalogs, roots);
+		}
+	}
+
+	private static Path resolve(Path folder, String location) {
+		if (location.startsWith("file:")) {
+			return Paths.get(java.net.URI.create(location)).normalize();
+		}
+		return folder.resolve(location).normalize();
+	}
+
+	private boolean isValid() {
+		for (Map.Entry<String, byte[]> catalog : catalogs.entrySet()) {
+			try {
+				if (!Arrays.equals(DependencyCache.hash(Paths.get(catalog.getKey())), catalog.getValue())) {
+					return false;
+				}
+			} catch (IOException e) {
+				return false;
+			}
+		}
+		for (Map.Entry<String, Long> folder : folders.entrySet()) {
+			if (new File(folder.getKey()).lastModified() != folder.getValue() || folder.getValue() >= created - RACY_MILLIS) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+/**
+ * A loader of OML files (in any of the OML persistence formats) into a resource set.
+ *
+ * With more than one thread, each file is parsed on a worker into a resource set of its own,
+ * since resource sets are not thread safe. The parsed resources are then moved to the given
+ * resource set in the given order, and the cross references of the resource set are resolved,
+ * so the resource set is no longer modified when they are read (e.g., by parallel validations).
+ * With one thread, the files are loaded into the given resource set, whose cross references are
+ * resolved lazily as usual.
+ */
+public class OmlLoader {
+
+	private static final Logger LOGGER = LogManager.getLogger(OmlLoader.class);
+
+	/**
+	 * Creates a new OmlLoader object
+	 */
+	public OmlLoader() {
+	}
+
+	/**
+	 * Loads the OML files with the given URIs into the given resource set
+	 *
+	 * @param resourceSet the resource set to load the files into
+	 * @param uris the URIs of the files
+	 * @param threads the number of threads used to parse the files
+	 * @return the loaded resources, in the order of the given URIs
+	 * @throws Exception error
+	 */
+	public static List<Resource> load(ResourceSet resourceSet, List<URI> uris, int threads) throws Exception {
+		return load(resourceSet, uris, threads, null);
+	}
+
+	/**
+	 * Loads the OML files with the given URIs into the given resource set, and records the time spent
+	 * loading each file to the given profile
+	 *
+	 * @param resourceSet the resource set to load the files into
+	 * @param uris the URIs of the files
+	 * @param threads the number of threads used to parse the files
+	 * @param profile the profile to record the load times to, or null
+	 * @return the loaded resources, in the order of the given URIs
+	 * @throws Exception error
+	 */
+	public static List<Resource> load(ResourceSet resourceSet, List<URI> uris, int threads, ValidationProfile profile) throws Exception {
+		final List<Resource> resources = new ArrayList<>(uris.size());
+		if (threads <= 1) {
+			for (URI uri : uris) {
+				LOGGER.info("Loading: " + uri);
+				final long start = System.nanoTime();
+				resources.add(resourceSet.getResource(uri, true));
+				if (profile != null) {
+					profile.recordLoad(uri, System.nanoTime() - start);
+				}
+			}
+			return resources;
+		}
+
+		// parse the files in parallel, each in its own resource set
+		final ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			final List<Future<Resource>> futures = new ArrayList<>(uris.size());
+			for (URI uri : uris) {
+				futures.add(executor.submit(() -> {
+					LOGGER.info("Loading: " + uri);
+					final long start = System.nanoTime();
+					final ResourceSet parseResourceSet = new ResourceSetImpl();
+					parseResourceSet.getLoadOptions().putAll(resourceSet.getLoadOptions());
+					final Resource resource = parseResourceSet.getResource(uri, true);
+					if (profile != null) {
+						profile.recordLoad(uri, System.nanoTime() - start);
+					}
+					return resource;
+				}));
+			}
+			for (Future<Resource> future : futures) {
+				resources.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		} finally {
+			executor.shutdownNow();
+		}
+
+		// attach the parsed resources (which removes them from their own resource sets)
+		for (Resource resource : resources) {
+			final Resource existing = resourceSet.getResource(resource.getURI(), false);
+			if (existing != null) {
+				resourceSet.getResources().remove(existing);
+			}
+			resourceSet.getResources().add(resource);
+		}
+
+		link(resourceSet, resources);
+		return resources;
+	}
+
+	// resolves the cross references between the resources (only timed as a whole)
+	private static void link(ResourceSet resourceSet, List<Resource> resources) {
+		final long start = System.nanoTime();
+		EcoreUtil.resolveAll(resourceSet);
+		LOGGER.debug("Linked " + resources.size() + " resources in " + (System.nanoTime() - start) / 1000000 + " ms");
+	}
+
+}
@@ -22,7 +22,16 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 import org.apache.log4j.Appender;
@@ -36,16 +45,21 @@ import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.resource.ResourceSet;
 import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
 import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
 
 import com.beust.jcommander.IParameterValidator;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
 import com.beust.jcommander.ParameterException;
 
+import io.opencaesar.oml.Ontology;
 import io.opencaesar.oml.dsl.OmlStandaloneSetup;
 import io.opencaesar.oml.resource.OmlJsonResourceFactory;
 import io.opencaesar.oml.resource.OmlXMIResourceFactory;
+import io.opencaesar.oml.util.OmlConstants;
+import io.opencaesar.oml.util.OmlRead;
 import io.opencaesar.oml.util.OmlResolve;
+import io.opencaesar.oml.validate.OmlValidator.Problem;
 
 /**
  * An application to validate an OML catalog 
@@ -60,17 +74,73 @@ public class OmlValidateApp {
 		order=1)
 	private String inputCatalogPath;
 
+	@Parameter(
+		names= {"--root-ontology-iri", "-r"}, 
+		description="IRI of a root OML ontology, whose import closure is validated instead of the whole catalog (Optional, can be repeated)", 
+		order=2
+	)
+	private List<String> rootOntologyIris = new ArrayList<>();
+
 	@Parameter(
 		names= {"--output-result-path", "-o"}, 
 		description="Path of output report file (Optional)", 
-		order=2
+		order=3
 	)
 	private String outputReportPath;
 
+	@Parameter(
+		names= {"--output-report-format", "-f"}, 
+		description="Format of the output report file (options: text, jsonl, sarif, default: text). The jsonl and sarif reports are written as the ontologies are validated (Optional)", 
+		validateWith=OutputReportFormat.class, 
+		order=4
+	)
+	private String outputReportFormat = TEXT;
+
+	static final String TEXT = "text";
+
+	@Parameter(
+		names= {"--threads", "-t"}, 
+		description="Number of threads used to load and validate the ontologies (Optional, default 1)", 
+		validateWith=ThreadCount.class, 
+		order=5
+	)
+	private int threads = 1;
+
+	@Parameter(
+		names= {"--max-errors", "-m"}, 
+		description="Maximum number of errors, after which no more ontologies are validated (Optional, default: no maximum)", 
+		validateWith=MaxErrors.class, 
+		order=6
+	)
+	private int maxErrors = 0;
+
+	@Parameter(
+		names= {"--validation-cache", "-c"}, 
+		description="Path of a file caching the validation results between runs, so only the changed ontologies and those importing them are validated again (Optional)", 
+		order=7
+	)
+	private String validationCachePath;
+
+	@Parameter(
+		names= {"--profile", "-p"}, 
+		description="Path of a JSON file to write the time spent loading and validating each ontology, and by each validator on each class, to. The validators and classes with the most time are also logged (Optional)", 
+		order=8
+	)
+	private String profilePath;
+
+	private static final int PROFILE_HOT_SPOTS = 20;
+
+	@Parameter(
+		names= {"--watch", "-w"}, 
+		description="Keeps the ontologies loaded after validating them, and validates them again as their files change, until stopped (Optional)", 
+		order=9
+	)
+	private boolean watch;
+
 	@Parameter(
 		names= {"-debug", "--d"}, 
 		description="Shows debug logging statements", 
-		order=3
+		order=10
 	)
 	private boolean debug;
 
@@ -78,14 +148,14 @@ public class OmlValidateApp {
 		names= {"--help","-h"}, 
 		description="Displays summary of options", 
 		help=true, 
-		order=4)
+		order=11)
 	private boolean help;
 
 	@Parameter(
 		names= {"--version","-v"}, 
 		description="Displays app version", 
 		help=true, 
-		order=5)
+		order=12)
 	private boolean version;
 	
 	private Logger LOGGER = LogManager.getLogger(OmlValidateApp.class);
@@ -133,8 +203,22 @@ public class OmlValidateApp {
 		LOGGER.info("                    OML Validate "+getAppVersion());
 		LOGGER.info("=================================================================");
 		LOGGER.info("Input Catalog = " + inputCatalogPath);
+		LOGGER.info("Root Ontologies = " + rootOntologyIris);
 		LOGGER.info("Output Report = " + outputReportPath);
+		LOGGER.info("Output Report Format = " + outputReportFormat);
+		LOGGER.info("Threads = " + threads);
+		LOGGER.info("Max Errors = " + (maxErrors > 0 ? maxErrors : "none"));
+		LOGGER.info("Validation Cache = " + validationCachePath);
+		LOGGER.info("Profile = " + profilePath);
+		LOGGER.info("Watch = " + watch);
 		
+		if (!TEXT.equals(outputReportFormat) && outputReportPath == null) {
+			throw new IllegalArgumentException("An output report path is required with the "+outputReportFormat+" report format");
+		}
+		if (watch && (!rootOntologyIris.isEmpty() || validationCachePath != null || maxErrors > 0 || profilePath != null)) {
+			throw new IllegalArgumentException("Root ontologies, a validation cache, a maximum number of errors or a profile cannot be used in watch mode");
+		}
+
 		// initialize OML resource set
 		OmlStandaloneSetup.doSetup();
 		OmlXMIResourceFactory.register();
@@ -146,28 +230,124 @@ public class OmlValidateApp {
 		// load the OML catalog
 		final URI inputCatalogUri = URI.createFileURI(inputCatalogPath);
 
-		// validate each resource in turn
+		// keep validating the catalog as it changes
+		if (watch) {
+			new ValidationWatcher(inputResourceSet, inputCatalogUri, threads, outputReportPath, outputReportFormat, getAppVersion()).run();
+			return;
+		}
+
+		// load the resources (in parallel, they are also linked so the resource set is no longer modified)
+		final List<URI> uris = new ArrayList<>();
 		for(File file : collectOmlFiles(inputCatalogUri)) {
-			URI uri = URI.createFileURI(file.getAbsolutePath());
-			LOGGER.info("Loading: " + uri);
-			inputResourceSet.getResource(uri, true);
+			uris.add(URI.createFileURI(file.getAbsolutePath()));
+		}
+
+		// with root ontologies, only their import closure is loaded (as the roots are) and validated
+		final Map<String, Resource> importClosure = !rootOntologyIris.isEmpty() ? loadImportClosure(inputResourceSet, inputCatalogUri) : null;
+		if (importClosure != null) {
+			final Set<String> catalogFiles = uris.stream().map(URI::toFileString).collect(Collectors.toSet());
+			uris.removeIf(uri -> !importClosure.containsKey(uri.toFileString()));
+			importClosure.keySet().stream().filter(file -> !catalogFiles.contains(file)).forEach(file -> uris.add(URI.createFileURI(file)));
+			LOGGER.info(uris.size() + " ontologies in the import closure of the root ontologies");
+		}
+
+		// only the ontologies that changed or import one that changed are validated again
+		final ValidationCache cache = (validationCachePath != null) ? ValidationCache.load(Paths.get(validationCachePath)) : null;
+		final List<URI> outdatedUris = (cache != null) ? cache.getOutdatedUris(new File(inputCatalogPath), uris) : uris;
+		if (cache != null) {
+			LOGGER.info(outdatedUris.size() + " of " + uris.size() + " ontologies to validate");
 		}
+		final ValidationProfile profile = (profilePath != null) ? new ValidationProfile() : null;
+		final List<Resource> resources = (importClosure != null) ?
+				outdatedUris.stream().map(uri -> importClosure.get(uri.toFileString())).collect(Collectors.toList()) :
+				OmlLoader.load(inputResourceSet, outdatedUris, threads, profile);
+		// the imports recorded in the cache are computed before the validations run, so no resource is
+		// traversed by the main thread while the workers validate it
+		final List<List<URI>> importUris = (cache != null) ?
+				resources.stream().map(OmlValidateApp::getImportUris).collect(Collectors.toList()) : null;
 		
-		// validate each resource in turn
-		StringBuffer problems = new StringBuffer();
-		for(File file : collectOmlFiles(inputCatalogUri)) {
-			URI uri = URI.createFileURI(file.getAbsolutePath());
-			LOGGER.info("Validating: " + uri);
-			Resource r = inputResourceSet.getResource(uri, false);
-			String results = OmlValidator.validate(r);
-	        if (results.length()>0) {
-	        	if (problems.length()>0)
-	        		problems.append("\n\n");
-	        	problems.append(results);
-	        }
-		}
-
-		if (problems.length() > 0) {
+		// validate the resources (in parallel, the results are still reported in catalog order),
+		// reusing the cached results of the other ontologies
+		final ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+		final ReportWriter reportWriter = !TEXT.equals(outputReportFormat) ? ReportWriter.create(outputReportFormat, Paths.get(outputReportPath), getAppVersion()) : null;
+		final StringBuffer problems = new StringBuffer();
+		int problemCount = 0;
+		int next = 0;
+		try {
+			// with a maximum, the workers stop starting validations once they found enough errors (an
+			// ontology they skipped is validated here if the report has not reached the maximum yet)
+			final AtomicInteger workerProblemCount = new AtomicInteger();
+			final List<Future<Result>> futures = new ArrayList<>();
+			if (executor != null) {
+				for (Resource r : resources) {
+					futures.add(executor.submit(() -> {
+						if (maxErrors > 0 && workerProblemCount.get() >= maxErrors) {
+							return null;
+						}
+						final Result result = validate(r, profile);
+						workerProblemCount.addAndGet(result.problems.size());
+						return result;
+					}));
+				}
+			}
+			for (URI uri : uris) {
+				if (maxErrors > 0 && problemCount >= maxErrors) {
+					// the executor's shutdown interrupts the validations in progress
+					LOGGER.warn("Stopped validating after reaching the maximum of " + maxErrors + " errors");
+					break;
+				}
+				final Result result;
+				if (next < outdatedUris.size() && outdatedUris.get(next).equals(uri)) {
+					final Resource r = resources.get(next);
+					final Result workerResult = (executor != null) ? futures.get(next).get() : null;
+					result = (workerResult != null) ? workerResult : validate(r, profile);
+					if (cache != null) {
+						cache.record(uri, result.description, result.problems, importUris.get(next));
+					}
+					next++;
+				} else {
+					result = new Result(cache.getResult(uri), cache.getProblems(uri));
+				}
+				problemCount += result.problems.size();
+				if (reportWriter != null) {
+					reportWriter.write(result.problems);
+				} else if (result.description.length()>0) {
+		        	if (problems.length()>0)
+		        		problems.append("\n\n");
+		        	problems.append(result.description);
+		        }
+			}
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+			if (reportWriter != null) {
+				reportWriter.close();
+			}
+		}
+		if (cache != null) {
+			// the outdated ontologies that were not validated must be validated next time
+			for (URI uri : outdatedUris.subList(next, outdatedUris.size())) {
+				cache.remove(uri);
+			}
+			cache.save();
+		}
+		if (profile != null) {
+			LOGGER.info("Validators and classes with the most validation time:");
+			for (String line : profile.getHotSpots(PROFILE_HOT_SPOTS)) {
+				LOGGER.info(line);
+			}
+			profile.write(Paths.get(profilePath));
+		}
+
+		if (reportWriter != null) {
+			// the structured report is kept even without problems, as it was followed during the validation
+			if (problemCount > 0) {
+				throw new IllegalStateException("Problems validating OML catalog: check '"+outputReportPath+"' for details.");
+			}
+		} else if (problems.length() > 0) {
 			if (outputReportPath != null) {
 				Files.write(Paths.get(outputReportPath), problems.toString().getBytes());
 				throw new IllegalStateException("Problems validating OML catalog: check '"+outputReportPath+"' for details.");
@@ -189,6 +369,81 @@ public class OmlValidateApp {
 		LOGGER.info("=================================================================");
 	}
 	
+	private Result validate(Resource resource, ValidationProfile profile) {
+		LOGGER.info("Validating: " + resource.getURI());
+		final long start = System.nanoTime();
+		final List<Problem> problems = new ArrayList<>();
+		final String description = OmlValidator.validate(resource, problems, profile);
+		if (profile != null) {
+			profile.recordValidation(resource.getURI(), System.nanoTime() - start);
+		}
+		return new Result(description, problems);
+	}
+
+	/**
+	 * The validation result of an ontology: a description of its problems and the problems themselves
+	 */
+	static class Result {
+		final String description;
+		final List<Problem> problems;
+
+		Result(String description, List<Problem> problems) {
+			this.description = description;
+			this.problems = problems;
+		}
+	}
+
+	private Map<String, Resource> loadImportClosure(ResourceSet resourceSet, URI catalogUri) {
+		final Map<String, Resource> importClosure = new LinkedHashMap<>();
+		for (String rootOntologyIri : rootOntologyIris) {
+			final URI rootUri = resolveRootOntologyIri(rootOntologyIri, catalogUri);
+			LOGGER.info("Loading: " + rootUri);
+			final Ontology rootOntology = OmlRead.getOntology(resourceSet.getResource(rootUri, true));
+			if (rootOntology == null) {
+				throw new IllegalArgumentException("Root ontology "+rootOntologyIri+" is not found in "+rootUri);
+			}
+			for (Resource r : OmlRead.getImportScope(rootOntology)) {
+				if (r.getURI().isFile()) {
+					importClosure.putIfAbsent(new File(r.getURI().toFileString()).getAbsolutePath(), r);
+				}
+			}
+		}
+		// link the closure like the loader does with threads, so the resource set is no longer modified by the parallel validations
+		if (threads > 1) {
+			EcoreUtil.resolveAll(resourceSet);
+		}
+		return importClosure;
+	}
+
+	private static URI resolveRootOntologyIri(String rootOntologyIri, URI catalogUri) {
+		final URI resolved = OmlResolve.resolveOmlFileUri(catalogUri, rootOntologyIri);
+		if (resolved != null && resolved.isFile()) {
+			final String filename = resolved.toFileString();
+			if (new File(filename).isFile()) {
+				return resolved;
+			}
+			for (String ext : OmlConstants.OML_EXTENSIONS) {
+				if (new File(filename+'.'+ext).isFile()) {
+					return URI.createFileURI(filename+'.'+ext);
+				}
+			}
+		}
+		throw new IllegalArgumentException("Root ontology "+rootOntologyIri+" cannot be resolved by the catalog");
+	}
+
+	static List<URI> getImportUris(Resource resource) {
+		final List<URI> uris = new ArrayList<>();
+		final Ontology ontology = OmlRead.getOntology(resource);
+		if (ontology != null) {
+			for (Resource r : OmlRead.getImportScope(ontology)) {
+				if (r != resource) {
+					uris.add(r.getURI());
+				}
+			}
+		}
+		return uris;
+	}
+
 	// Utility methods
 
 	/**
@@ -199,7 +454,7 @@ public class OmlValidateApp {
 	 * @throws IOException error
 	 */
 	public static List<File> collectOmlFiles(URI catalogUri) throws IOException {
-		return OmlResolve.resolveOmlFileUris(catalogUri).stream()
+		return OmlCatalogIndex.resolveOmlFileUris(catalogUri).stream()
 				.map(i -> new File(i.toFileString()))
 				.collect(Collectors.toList());
 	}
@@ -222,6 +477,67 @@ public class OmlValidateApp {
 	  	}
 	}
 
+	/**
+	 * Validator for the output report format 
+	 */
+	public static class OutputReportFormat implements IParameterValidator {
+		/**
+		 * Creates a new OutputReportFormat object
+		 */
+		public OutputReportFormat() {
+		}
+		@Override
+		public void validate(String name, String value) throws ParameterException {
+			if (!TEXT.equals(value) && !ReportWriter.JSONL.equals(value) && !ReportWriter.SARIF.equals(value)) {
+				throw new ParameterException("Parameter " + name + " should be one of text, jsonl or sarif");
+			}
+	  	}
+	}
+
+	/**
+	 * Validator for the maximum number of errors 
+	 */
+	public static class MaxErrors implements IParameterValidator {
+		/**
+		 * Creates a new MaxErrors object
+		 */
+		public MaxErrors() {
+		}
+		@Override
+		public void validate(String name, String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) > 0) {
+					return;
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			throw new ParameterException("Parameter " + name + " should be a positive number of errors");
+	  	}
+	}
+
+	/**
+	 * Validator for the thread count 
+	 */
+	public static class ThreadCount implements IParameterValidator {
+		/**
+		 * Creates a new ThreadCount object
+		 */
+		public ThreadCount() {
+		}
+		@Override
+		public void validate(String name, String value) throws ParameterException {
+			try {
+				if (Integer.parseInt(value) > 0) {
+					return;
+				}
+			} catch (NumberFormatException e) {
+				// fall through
+			}
+			throw new ParameterException("Parameter " + name + " should be a positive number of threads");
+	  	}
+	}
+
 	/**
 	 * Get application version id from properties file.
 	 * @return version string from build.properties or UNKNOWN
@@ -18,13 +18,27 @@
  */
 package io.opencaesar.oml.validate;
 
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
 
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.BasicDiagnostic;
 import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.common.util.DiagnosticChain;
+import org.eclipse.emf.ecore.EClass;
 import org.eclipse.emf.ecore.EObject;
 import org.eclipse.emf.ecore.EReference;
+import org.eclipse.emf.ecore.EValidator;
 import org.eclipse.emf.ecore.resource.Resource;
 import org.eclipse.emf.ecore.util.Diagnostician;
+import org.eclipse.xtext.nodemodel.INode;
+import org.eclipse.xtext.nodemodel.util.NodeModelUtils;
+import org.eclipse.xtext.util.LineAndColumn;
+import org.eclipse.xtext.validation.CompositeEValidator;
 
 import io.opencaesar.oml.Member;
 import io.opencaesar.oml.Ontology;
@@ -35,6 +49,8 @@ import io.opencaesar.oml.util.OmlRead;
  */
 public class OmlValidator {
 
+	private static final Logger LOGGER = LogManager.getLogger(OmlValidator.class);
+
 	/**
 	 * Creates a new OmlValidator object
 	 */
@@ -48,7 +64,77 @@ public class OmlValidator {
 	 * @return String representing problems
 	 */
 	public static String validate(Ontology ontology) {
+		return validate(ontology, new ArrayList<>());
+	}
+
+	/**
+	 * Validates the given OML ontology, adds the problems found to the given list, and returns a problem description.
+	 * The validation is abandoned with a {@link CancellationException} if the current thread is interrupted.
+	 * 
+	 * @param ontology An OML ontology
+	 * @param problemList The list to add the problems to
+	 * @return String representing problems
+	 */
+	public static String validate(Ontology ontology, List<Problem> problemList) {
+		return validate(ontology, problemList, null);
+	}
+
+	/**
+	 * Validates the given OML ontology, adds the problems found to the given list, records the time spent
+	 * by each validator on each class to the given profile, and returns a problem description.
+	 * The validation is abandoned with a {@link CancellationException} if the current thread is interrupted.
+	 * 
+	 * @param ontology An OML ontology
+	 * @param problemList The list to add the problems to
+	 * @param profile The profile to record the validation time to, or null
+	 * @return String representing problems
+	 */
+	public static String validate(Ontology ontology, List<Problem> problemList, ValidationProfile profile) {
 		final Diagnostician diagnostician = new Diagnostician() {
+			// the names of the objects without an IRI, and the indexes of objects in many-valued containments,
+			// computed once (a containment list is indexed in one pass the first time one of its objects is named)
+			private final Map<EObject, String> names = new IdentityHashMap<>();
+			private final Map<EObject, Integer> indexes = new IdentityHashMap<>();
+			@Override
+			protected boolean doValidate(EValidator eValidator, EClass eClass, EObject eObject, DiagnosticChain diagnostics, Map<Object, Object> context) {
+				if (profile == null) {
+					return super.doValidate(eValidator, eClass, eObject, diagnostics, context);
+				}
+				if (eValidator instanceof CompositeEValidator) {
+					// the validators of a package are usually combined, so each one is timed separately
+					// (and its exceptions are logged and reported the same way as by the composite itself)
+					boolean result = true;
+					for (CompositeEValidator.EValidatorEqualitySupport support : ((CompositeEValidator)eValidator).getContents()) {
+						final EValidator delegate = support.getDelegate();
+						final long start = System.nanoTime();
+						try {
+							result &= delegate.validate(eClass, eObject, diagnostics, context);
+						} catch (Exception e) {
+							LOGGER.error("Error executing EValidator " + getLabel(delegate), e);
+							if (diagnostics != null) {
+								diagnostics.add(new BasicDiagnostic(Diagnostic.ERROR, CompositeEValidator.class.getName(), 0, "Error executing EValidator", new Object[] { eObject, e }));
+							}
+						} finally {
+							profile.recordConstraints(getLabel(delegate), eClass.getName(), System.nanoTime() - start);
+						}
+					}
+					return result;
+				}
+				final long start = System.nanoTime();
+				try {
+					return super.doValidate(eValidator, eClass, eObject, diagnostics, context);
+				} finally {
+					profile.recordConstraints(getLabel(eValidator), eClass.getName(), System.nanoTime() - start);
+				}
+			}
+			@Override
+			protected boolean doValidateContents(EObject eObject, DiagnosticChain diagnostics, Map<Object, Object> context) {
+				// a validation whose thread is interrupted is abandoned, rather than returning partial results
+				if (Thread.currentThread().isInterrupted()) {
+					throw new CancellationException("Validation of " + ontology.getNamespace() + " was interrupted");
+				}
+				return super.doValidateContents(eObject, diagnostics, context);
+			}
 			@Override
 			public String getObjectLabel(EObject eObject) {
 				if (eObject == null) {
@@ -65,14 +151,29 @@ public class OmlValidator {
 		    	} else if (eObject instanceof Ontology) {
 			    	return ((Ontology)eObject).getNamespace();
 			    } else {
-			    	EReference eRef = eObject.eContainmentFeature();
-			    	int index = -1;
-			    	if (eRef.isMany()) {
-			    		index = ((List<?>)eObject.eContainer().eGet(eRef)).indexOf(eObject);
+			    	String name = names.get(eObject);
+			    	if (name == null) {
+				    	EReference eRef = eObject.eContainmentFeature();
+				    	int index = -1;
+				    	if (eRef.isMany()) {
+				    		index = getIndex(eObject, (List<?>)eObject.eContainer().eGet(eRef));
+				    	}
+				    	name = getName(eObject.eContainer())+"/"+eRef.getName()+(index != -1 ? "["+index+"]" :"");
+				    	names.put(eObject, name);
 			    	}
-			    	return getName(eObject.eContainer())+"/"+eRef.getName()+(index != -1 ? "["+index+"]" :"");
+			    	return name;
 			    }
 			}
+			private int getIndex(EObject eObject, List<?> list) {
+				Integer index = indexes.get(eObject);
+				if (index == null) {
+					for (int i = 0; i < list.size(); i++) {
+						indexes.put((EObject)list.get(i), i);
+					}
+					index = indexes.get(eObject);
+				}
+				return (index != null) ? index : -1;
+			}
 		};
 		
 		String problems = "";
@@ -83,6 +184,7 @@ public class OmlValidator {
 	             if (child.getSeverity () == Diagnostic.ERROR) {
 	                 sb.append ( System.lineSeparator () );
 	                 sb.append ("\t"+ child.getMessage () );
+	                 problemList.add(createProblem(ontology, child, diagnostician));
 	             }
 	         }
 	        problems = sb.toString();
@@ -90,6 +192,30 @@ public class OmlValidator {
 		return problems;
 	}
 
+	// the label of a validator in a profile (anonymous classes have no simple name)
+	static String getLabel(EValidator eValidator) {
+		final String name = eValidator.getClass().getSimpleName();
+		return name.isEmpty() ? eValidator.getClass().getName() : name;
+	}
+
+	static Problem createProblem(Ontology ontology, Diagnostic diagnostic, Diagnostician diagnostician) {
+		EObject eObject = null;
+		if (!diagnostic.getData().isEmpty() && diagnostic.getData().get(0) instanceof EObject) {
+			eObject = (EObject) diagnostic.getData().get(0);
+		}
+		Resource resource = (eObject != null && eObject.eResource() != null) ? eObject.eResource() : ontology.eResource();
+		int line = -1;
+		int column = -1;
+		INode node = (eObject != null) ? NodeModelUtils.findActualNodeFor(eObject) : null;
+		if (node != null) {
+			LineAndColumn lineAndColumn = NodeModelUtils.getLineAndColumn(node, node.getOffset());
+			line = lineAndColumn.getLine();
+			column = lineAndColumn.getColumn();
+		}
+		String label = (eObject != null) ? diagnostician.getObjectLabel(eObject) : null;
+		return new Problem(String.valueOf(resource.getURI()), line, column, Problem.ERROR, label, diagnostic.getMessage());
+	}
+
 	/**
 	 * Validates the given OML resource and returns a problem description
 	 * 
@@ -97,17 +223,42 @@ public class OmlValidator {
 	 * @return String representing problems
 	 */
 	public static String validate(Resource resource) {
+		return validate(resource, new ArrayList<>());
+	}
+
+	/**
+	 * Validates the given OML resource, adds the problems found to the given list, and returns a problem description
+	 * 
+	 * @param resource An OML resource
+	 * @param problemList The list to add the problems to
+	 * @return String representing problems
+	 */
+	public static String validate(Resource resource, List<Problem> problemList) {
+		return validate(resource, problemList, null);
+	}
+
+	/**
+	 * Validates the given OML resource, adds the problems found to the given list, records the time spent
+	 * by each validator on each class to the given profile, and returns a problem description
+	 * 
+	 * @param resource An OML resource
+	 * @param problemList The list to add the problems to
+	 * @param profile The profile to record the validation time to, or null
+	 * @return String representing problems
+	 */
+	public static String validate(Resource resource, List<Problem> problemList, ValidationProfile profile) {
 	       final StringBuilder sb = new StringBuilder();
 	       if (!resource.getErrors().isEmpty()) {
 		       sb.append("Diagnosis of resource "+resource.getURI());
 		       for (final org.eclipse.emf.ecore.resource.Resource.Diagnostic diagnostic : resource.getErrors()) {
 	                sb.append ( System.lineSeparator () );
 	                sb.append ( "\t["+diagnostic.getLine()+", "+diagnostic.getColumn()+"]: "+diagnostic.getMessage () );
+	                problemList.add(new Problem(String.valueOf(resource.getURI()), diagnostic.getLine(), diagnostic.getColumn(), Problem.ERROR, null, diagnostic.getMessage()));
 		        }
 	       } else {
 				Ontology ontology = OmlRead.getOntology(resource);
 				if (ontology != null) {
-					String problems = validate(ontology);
+					String problems = validate(ontology, problemList, profile);
 					if (problems.length()>0) {
 						sb.append(problems);
 					}
@@ -116,4 +267,82 @@ public class OmlValidator {
 	       return sb.toString();
 		}
 
+	/**
+	 * A problem found in an OML resource
+	 */
+	public static class Problem {
+		/**
+		 * The severity of errors
+		 */
+		public static final String ERROR = "error";
+
+		private final String uri;
+		private final int line;
+		private final int column;
+		private final String severity;
+		private final String label;
+		private final String message;
+
+		/**
+		 * Creates a new Problem object
+		 * 
+		 * @param uri The URI of the resource
+		 * @param line The line of the problem, or -1 if unknown
+		 * @param column The column of the problem, or -1 if unknown
+		 * @param severity The severity of the problem
+		 * @param label The label of the element with the problem, or null if unknown
+		 * @param message The message of the problem
+		 */
+		public Problem(String uri, int line, int column, String severity, String label, String message) {
+			this.uri = uri;
+			this.line = line;
+			this.column = column;
+			this.severity = severity;
+			this.label = label;
+			this.message = message;
+		}
+
+		/**
+		 * @return The URI of the resource
+		 */
+		public String getUri() {
+			return uri;
+		}
+
+		/**
+		 * @return The line of the problem, or -1 if unknown
+		 */
+		public int getLine() {
+			return line;
+		}
+
+		/**
+		 * @return The column of the problem, or -1 if unknown
+		 */
+		public int getColumn() {
+			return column;
+		}
+
+		/**
+		 * @return The severity of the problem
+		 */
+		public String getSeverity() {
+			return severity;
+		}
+
+		/**
+		 * @return The label of the element with the problem, or null if unknown
+		 */
+		public String getLabel() {
+			return label;
+		}
+
+		/**
+		 * @return The message of the problem
+		 */
+		public String getMessage() {
+			return message;
+		}
+	}
+
 }
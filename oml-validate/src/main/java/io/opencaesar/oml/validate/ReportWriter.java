@@ -0,0 +1,174 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+/**
+ * A writer of a structured validation report, which streams the problems of each ontology to the
+ * report as soon as they are known, so the report can be followed while the validation runs.
+ */
+abstract class ReportWriter implements Closeable {
+
+	/**
+	 * The JSON Lines format, with one JSON object per problem
+	 */
+	static final String JSONL = "jsonl";
+
+	/**
+	 * The SARIF 2.1.0 format
+	 */
+	static final String SARIF = "sarif";
+
+	protected final Writer out;
+
+	private ReportWriter(Path path) throws IOException {
+		this.out = Files.newBufferedWriter(path, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Creates a report writer in the given format
+	 *
+	 * @param format the format of the report
+	 * @param path the path of the report file
+	 * @param toolVersion the version of the validation tool
+	 * @return the report writer
+	 * @throws IOException error
+	 */
+	static ReportWriter create(String format, Path path, String toolVersion) throws IOException {
+		if (SARIF.equals(format)) {
+			return new SarifWriter(path, toolVersion);
+		}
+		return new JsonLinesWriter(path);
+	}
+
+	/**
+	 * Writes the given problems of an ontology to the report and flushes it
+	 *
+	 * @param problems the problems
+	 * @throws IOException error
+	 */
+	void write(List<Problem> problems) throws IOException {
+		for (Problem problem : problems) {
+			write(problem);
+		}
+		out.flush();
+	}
+
+	protected abstract void write(Problem problem) throws IOException;
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+
+	protected static String quote(String value) {
+		if (value == null) {
+			return "null";
+		}
+		final StringBuilder sb = new StringBuilder(value.length() + 2);
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+				case '"': sb.append("\\\""); break;
+				case '\\': sb.append("\\\\"); break;
+				case '\n': sb.append("\\n"); break;
+				case '\r': sb.append("\\r"); break;
+				case '\t': sb.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int) c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	/**
+	 * A JSON Lines report: {"uri":..,"line":..,"column":..,"severity":..,"label":..,"message":..} per line
+	 */
+	private static class JsonLinesWriter extends ReportWriter {
+
+		private JsonLinesWriter(Path path) throws IOException {
+			super(path);
+		}
+
+		@Override
+		protected void write(Problem problem) throws IOException {
+			out.write("{\"uri\":" + quote(problem.getUri())
+				+ ",\"line\":" + problem.getLine()
+				+ ",\"column\":" + problem.getColumn()
+				+ ",\"severity\":" + quote(problem.getSeverity())
+				+ ",\"label\":" + quote(problem.getLabel())
+				+ ",\"message\":" + quote(problem.getMessage()) + "}\n");
+		}
+	}
+
+	/**
+	 * A SARIF report with one run, whose results are streamed (the document is completed when the writer is closed)
+	 */
+	private static class SarifWriter extends ReportWriter {
+
+		private boolean first = true;
+
+		private SarifWriter(Path path, String toolVersion) throws IOException {
+			super(path);
+			out.write("{\"version\":\"2.1.0\",\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"runs\":[{");
+			// the version is omitted when unknown, since SARIF does not allow a null version
+			out.write("\"tool\":{\"driver\":{\"name\":\"oml-validate\"" + (toolVersion != null ? ",\"version\":" + quote(toolVersion) : "") + "}},");
+			out.write("\"results\":[\n");
+		}
+
+		@Override
+		protected void write(Problem problem) throws IOException {
+			if (!first) {
+				out.write(",\n");
+			}
+			first = false;
+			out.write("{\"level\":" + quote(problem.getSeverity())
+				+ ",\"message\":{\"text\":" + quote(problem.getMessage()) + "}"
+				+ ",\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":" + quote(problem.getUri()) + "}");
+			if (problem.getLine() > 0) {
+				out.write(",\"region\":{\"startLine\":" + problem.getLine() + (problem.getColumn() > 0 ? ",\"startColumn\":" + problem.getColumn() : "") + "}");
+			}
+			out.write("}");
+			if (problem.getLabel() != null) {
+				out.write(",\"logicalLocations\":[{\"fullyQualifiedName\":" + quote(problem.getLabel()) + "}]");
+			}
+			out.write("}]}");
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.write("\n]}]}\n");
+			super.close();
+		}
+	}
+}
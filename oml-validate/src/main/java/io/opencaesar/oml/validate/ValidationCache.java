@@ -0,0 +1,147 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+/**
+ * A cache of the validation results of the OML files of a catalog, which is persisted between runs.
+ *
+ * For each file, the cache keeps its validation result (as a description and as a list of problems),
+ * which is reused until the file is outdated (see {@link DependencyCache}). Everything is validated
+ * again when the contents of the catalog file itself changed.
+ */
+class ValidationCache extends DependencyCache<ValidationCache.Validation> {
+
+	private static final int MAGIC = 0x4F4D4C56; // "OMLV"
+	private static final int VERSION = 4;
+
+	private ValidationCache(Path path) {
+		super(path, MAGIC, VERSION);
+	}
+
+	/**
+	 * Loads the cache at the given path, or creates an empty one if there is no (readable) cache there
+	 *
+	 * @param path the path of the cache file
+	 * @return the validation cache
+	 */
+	public static ValidationCache load(Path path) {
+		ValidationCache cache = new ValidationCache(path);
+		cache.load();
+		return cache;
+	}
+
+	/**
+	 * Returns the URIs of the given files of the given catalog that need to be validated, in order
+	 *
+	 * @param catalogFile the catalog file
+	 * @param uris the URIs of the files of the catalog
+	 * @return the URIs of the files that need to be validated
+	 * @throws IOException error
+	 */
+	public List<URI> getOutdatedUris(File catalogFile, List<URI> uris) throws IOException {
+		return getOutdatedUris(HexFormat.of().formatHex(hash(catalogFile.toPath())), uris);
+	}
+
+	/**
+	 * Returns the cached validation result of the given file
+	 *
+	 * @param uri the URI of the file
+	 * @return the validation result
+	 */
+	public String getResult(URI uri) {
+		return get(uri).result;
+	}
+
+	/**
+	 * Returns the cached problems of the given file
+	 *
+	 * @param uri the URI of the file
+	 * @return the problems
+	 */
+	public List<Problem> getProblems(URI uri) {
+		return get(uri).problems;
+	}
+
+	/**
+	 * Records the validation result of the given file
+	 *
+	 * @param uri the URI of the file
+	 * @param result the validation result
+	 * @param problems the problems of the file
+	 * @param imports the URIs of the files in the import closure of the file
+	 */
+	public void record(URI uri, String result, List<Problem> problems, Collection<URI> imports) {
+		record(uri, new Validation(result, problems), imports);
+	}
+
+	@Override
+	protected Validation readValue(DataInputStream in) throws IOException {
+		String result = readString(in);
+		int problemCount = in.readInt();
+		List<Problem> problems = new ArrayList<>(problemCount);
+		for (int j = 0; j < problemCount; j++) {
+			problems.add(new Problem(readString(in), in.readInt(), in.readInt(), in.readUTF(), in.readBoolean() ? readString(in) : null, readString(in)));
+		}
+		return new Validation(result, problems);
+	}
+
+	@Override
+	protected void writeValue(DataOutputStream out, Validation value) throws IOException {
+		writeString(out, value.result);
+		out.writeInt(value.problems.size());
+		for (Problem problem : value.problems) {
+			writeString(out, problem.getUri());
+			out.writeInt(problem.getLine());
+			out.writeInt(problem.getColumn());
+			out.writeUTF(problem.getSeverity());
+			out.writeBoolean(problem.getLabel() != null);
+			if (problem.getLabel() != null) {
+				writeString(out, problem.getLabel());
+			}
+			writeString(out, problem.getMessage());
+		}
+	}
+
+	/**
+	 * The cached validation of a file
+	 */
+	static final class Validation {
+		private final String result;
+		private final List<Problem> problems;
+
+		private Validation(String result, List<Problem> problems) {
+			this.result = result;
+			this.problems = problems;
+		}
+	}
+}
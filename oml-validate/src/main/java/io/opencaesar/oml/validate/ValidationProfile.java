@@ -0,0 +1,158 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * A profile of the time spent loading and validating OML ontologies, which can be shared by threads.
+ *
+ * The validation time is recorded per validator and validated class: each entry covers the
+ * constraints that a validator checks on the objects of a class (not their contents), with their
+ * invocation count and their total and maximum time. The load and validation times are also
+ * recorded per ontology.
+ */
+public class ValidationProfile {
+
+	private final Map<String, Timing> constraints = new ConcurrentHashMap<>();
+	private final Map<URI, Timing> loads = new ConcurrentHashMap<>();
+	private final Map<URI, Timing> validations = new ConcurrentHashMap<>();
+
+	/**
+	 * Creates a new ValidationProfile object
+	 */
+	public ValidationProfile() {
+	}
+
+	/**
+	 * Records the time a validator spent checking the constraints of a class on an object
+	 *
+	 * @param validator the name of the validator
+	 * @param eClass the name of the class
+	 * @param nanos the time in nanoseconds
+	 */
+	void recordConstraints(String validator, String eClass, long nanos) {
+		constraints.computeIfAbsent(validator + " " + eClass, k -> new Timing()).record(nanos);
+	}
+
+	/**
+	 * Records the time spent loading an ontology
+	 *
+	 * @param uri the URI of the ontology's resource
+	 * @param nanos the time in nanoseconds
+	 */
+	void recordLoad(URI uri, long nanos) {
+		loads.computeIfAbsent(uri, k -> new Timing()).record(nanos);
+	}
+
+	/**
+	 * Records the time spent validating an ontology
+	 *
+	 * @param uri the URI of the ontology's resource
+	 * @param nanos the time in nanoseconds
+	 */
+	void recordValidation(URI uri, long nanos) {
+		validations.computeIfAbsent(uri, k -> new Timing()).record(nanos);
+	}
+
+	/**
+	 * Returns a table of the validators and classes with the most validation time
+	 *
+	 * @param top the maximum number of rows
+	 * @return the lines of the table
+	 */
+	List<String> getHotSpots(int top) {
+		final List<String> lines = new ArrayList<>();
+		lines.add(String.format("%12s %12s %12s  %s", "count", "total (ms)", "max (ms)", "validator class"));
+		sorted(constraints).stream().limit(top).forEach(e -> {
+			final Timing t = e.getValue();
+			lines.add(String.format("%12d %12.3f %12.3f  %s", t.count.sum(), t.total.sum() / 1e6, t.max.get() / 1e6, e.getKey()));
+		});
+		return lines;
+	}
+
+	/**
+	 * Writes this profile as a JSON document: the timings of the validators and classes by decreasing
+	 * total time, and the load and validation times of the ontologies by URI (all in nanoseconds)
+	 *
+	 * @param path the path of the file
+	 * @throws IOException error
+	 */
+	void write(Path path) throws IOException {
+		try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+			out.write("{\"constraints\":[");
+			String separator = "\n";
+			for (Map.Entry<String, Timing> e : sorted(constraints)) {
+				final String[] key = e.getKey().split(" ", 2);
+				final Timing t = e.getValue();
+				out.write(separator + "{\"validator\":" + ReportWriter.quote(key[0]) + ",\"eClass\":" + ReportWriter.quote(key[1])
+					+ ",\"count\":" + t.count.sum() + ",\"totalNanos\":" + t.total.sum() + ",\"maxNanos\":" + t.max.get() + "}");
+				separator = ",\n";
+			}
+			out.write("\n],\"ontologies\":[");
+			separator = "\n";
+			final List<URI> uris = new ArrayList<>(loads.keySet());
+			validations.keySet().stream().filter(uri -> !loads.containsKey(uri)).forEach(uris::add);
+			uris.sort(Comparator.comparing(URI::toString));
+			for (URI uri : uris) {
+				final Timing load = loads.get(uri);
+				final Timing validation = validations.get(uri);
+				out.write(separator + "{\"uri\":" + ReportWriter.quote(uri.toString())
+					+ ",\"loadNanos\":" + (load != null ? load.total.sum() : -1)
+					+ ",\"validationNanos\":" + (validation != null ? validation.total.sum() : -1) + "}");
+				separator = ",\n";
+			}
+			out.write("\n]}\n");
+		}
+	}
+
+	private static List<Map.Entry<String, Timing>> sorted(Map<String, Timing> timings) {
+		final List<Map.Entry<String, Timing>> entries = new ArrayList<>(timings.entrySet());
+		entries.sort(Comparator.comparingLong((Map.Entry<String, Timing> e) -> e.getValue().total.sum()).reversed());
+		return entries;
+	}
+
+	/**
+	 * The invocation count, and the total and maximum time, of something timed by several threads
+	 */
+	private static final class Timing {
+		private final LongAdder count = new LongAdder();
+		private final LongAdder total = new LongAdder();
+		private final AtomicLong max = new AtomicLong();
+
+		private void record(long nanos) {
+			count.increment();
+			total.add(nanos);
+			max.accumulateAndGet(nanos, Math::max);
+		}
+	}
+}
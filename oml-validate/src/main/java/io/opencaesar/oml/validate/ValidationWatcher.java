@@ -0,0 +1,296 @@
+/**
+ * 
+ * Copyright 2019-2021 California Institute of Technology ("Caltech").
+ * U.S. Government sponsorship acknowledged.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * 
+ */
+package io.opencaesar.oml.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.LogManager;
+import org.apache.log4j.Logger;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+
+import io.opencaesar.oml.validate.OmlValidateApp.Result;
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+/**
+ * A validator of the OML files of a catalog that keeps them loaded, and watches their folders to
+ * validate them again as they change.
+ *
+ * When files change, only the ontologies whose import closure contains one of them are loaded and
+ * validated again (the importing ones too, since their references were resolved to the ontologies
+ * that changed). The problems of those ontologies are logged, and the
+ * report file (if any) is rewritten with the problems of the whole catalog.
+ */
+class ValidationWatcher {
+
+	// the time to wait for more changes after a change, since a file is often written several times when saved
+	private static final long QUIET_PERIOD = 100;
+
+	private static final Logger LOGGER = LogManager.getLogger(ValidationWatcher.class);
+
+	private final ResourceSet resourceSet;
+	private final URI catalogUri;
+	private final int threads;
+	private final String reportPath;
+	private final String reportFormat;
+	private final String toolVersion;
+
+	private List<URI> uris = Collections.emptyList();
+	private final Map<URI, Result> results = new HashMap<>();
+	private final Map<URI, List<URI>> imports = new HashMap<>();
+	private final Map<WatchKey, Path> watchedFolders = new HashMap<>();
+
+	/**
+	 * Creates a new ValidationWatcher object
+	 *
+	 * @param resourceSet the resource set to keep the OML files loaded in
+	 * @param catalogUri the URI of the OML catalog
+	 * @param threads the number of threads used to load and validate the ontologies
+	 * @param reportPath the path of the report file, or null
+	 * @param reportFormat the format of the report file
+	 * @param toolVersion the version of the validation tool
+	 */
+	ValidationWatcher(ResourceSet resourceSet, URI catalogUri, int threads, String reportPath, String reportFormat, String toolVersion) {
+		this.resourceSet = resourceSet;
+		this.catalogUri = catalogUri;
+		this.threads = threads;
+		this.reportPath = reportPath;
+		this.reportFormat = reportFormat;
+		this.toolVersion = toolVersion;
+	}
+
+	/**
+	 * Validates the catalog, then validates it again on each change until the thread is interrupted
+	 *
+	 * @throws Exception error
+	 */
+	void run() throws Exception {
+		final ExecutorService executor = (threads > 1) ? Executors.newFixedThreadPool(threads) : null;
+		try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+			refresh(Collections.emptySet(), executor);
+			watch(watchService);
+			LOGGER.info("Watching " + watchedFolders.size() + " folders for changes");
+			while (true) {
+				// collect the changes until there are none for a while
+				final Set<URI> changedUris = new HashSet<>();
+				boolean overflow = false;
+				WatchKey key = watchService.take();
+				while (key != null) {
+					final Path folder = watchedFolders.get(key);
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							overflow = true;
+						} else if (folder != null) {
+							changedUris.add(URI.createFileURI(folder.resolve((Path) event.context()).toString()));
+						}
+					}
+					if (!key.reset()) {
+						watchedFolders.remove(key);
+					}
+					key = watchService.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS);
+				}
+				if (overflow) {
+					changedUris.addAll(uris);
+				}
+				try {
+					refresh(changedUris, executor);
+				} catch (Exception e) {
+					// the files that could not be loaded are loaded again on their next change
+					LOGGER.error("Cannot validate changes: " + e.getMessage(), e);
+				}
+				watch(watchService);
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdownNow();
+			}
+		}
+	}
+
+	private void watch(WatchService watchService) throws IOException {
+		final Set<Path> folders = OmlCatalogIndex.resolveFolders(catalogUri);
+		folders.removeAll(watchedFolders.values());
+		for (Path folder : folders) {
+			if (Files.isDirectory(folder)) {
+				final WatchKey key = folder.register(watchService,
+						StandardWatchEventKinds.ENTRY_CREATE,
+						StandardWatchEventKinds.ENTRY_DELETE,
+						StandardWatchEventKinds.ENTRY_MODIFY);
+				watchedFolders.put(key, folder);
+			}
+		}
+	}
+
+	/**
+	 * Loads and validates the given changed files again, along with the files of the catalog that were
+	 * added or removed, and the files importing them
+	 *
+	 * @param changedUris the URIs of the changed files
+	 * @param executor the executor of the validations, or null to validate on this thread
+	 * @throws Exception error
+	 */
+	void refresh(Set<URI> changedUris, ExecutorService executor) throws Exception {
+		final long start = System.currentTimeMillis();
+
+		// the files of the catalog (which changed if files were added or removed)
+		final List<URI> oldUris = uris;
+		uris = new ArrayList<>();
+		for (URI uri : OmlCatalogIndex.resolveOmlFileUris(catalogUri)) {
+			uris.add(URI.createFileURI(new File(uri.toFileString()).getAbsolutePath()));
+		}
+		final Set<URI> removedUris = new HashSet<>(oldUris);
+		removedUris.removeAll(uris);
+
+		// the changed, added and removed files, and the files importing them
+		final Set<URI> changed = new HashSet<>(removedUris);
+		for (URI uri : uris) {
+			if (changedUris.contains(uri) || !results.containsKey(uri)) {
+				changed.add(uri);
+			}
+		}
+		final List<URI> affectedUris = new ArrayList<>();
+		for (URI uri : uris) {
+			if (changed.contains(uri) || imports.get(uri).stream().anyMatch(changed::contains)) {
+				affectedUris.add(uri);
+			}
+		}
+		if (affectedUris.isEmpty() && removedUris.isEmpty()) {
+			return;
+		}
+
+		// load the changed files and the files importing them again, since the references of the importing
+		// files were resolved to the objects of the changed files, which are no longer those of the files
+		final Set<URI> unloadedUris = new HashSet<>(removedUris);
+		unloadedUris.addAll(affectedUris);
+		for (URI uri : unloadedUris) {
+			final Resource resource = resourceSet.getResource(uri, false);
+			if (resource != null) {
+				resource.unload();
+				resourceSet.getResources().remove(resource);
+			}
+			results.remove(uri);
+			imports.remove(uri);
+		}
+		OmlLoader.load(resourceSet, affectedUris, threads);
+		final List<Resource> resources = new ArrayList<>();
+		for (URI uri : affectedUris) {
+			final Resource resource = resourceSet.getResource(uri, true);
+			EcoreUtil.resolveAll(resource);
+			resources.add(resource);
+		}
+
+		// validate the affected ontologies
+		final List<Result> newResults = validate(resources, executor);
+		int problemCount = 0;
+		for (int i = 0; i < resources.size(); i++) {
+			final Result result = newResults.get(i);
+			results.put(affectedUris.get(i), result);
+			imports.put(affectedUris.get(i), OmlValidateApp.getImportUris(resources.get(i)));
+			if (result.description.length() > 0) {
+				LOGGER.error(result.description);
+			}
+		}
+		for (Result result : results.values()) {
+			problemCount += result.problems.size();
+		}
+		if (reportPath != null) {
+			writeReport();
+		}
+		LOGGER.info("Validated " + resources.size() + " of " + uris.size() + " ontologies in " + (System.currentTimeMillis() - start) + " ms: "
+				+ (problemCount > 0 ? problemCount + " problems in the catalog" : "no problems in the catalog"));
+	}
+
+	private List<Result> validate(List<Resource> resources, ExecutorService executor) throws Exception {
+		final List<Result> results = new ArrayList<>(resources.size());
+		if (executor == null) {
+			for (Resource resource : resources) {
+				results.add(validate(resource));
+			}
+			return results;
+		}
+		final List<Future<Result>> futures = new ArrayList<>(resources.size());
+		for (Resource resource : resources) {
+			futures.add(executor.submit(() -> validate(resource)));
+		}
+		try {
+			for (Future<Result> future : futures) {
+				results.add(future.get());
+			}
+		} catch (ExecutionException e) {
+			throw (e.getCause() instanceof Exception) ? (Exception) e.getCause() : e;
+		}
+		return results;
+	}
+
+	private static Result validate(Resource resource) {
+		LOGGER.info("Validating: " + resource.getURI());
+		final List<Problem> problems = new ArrayList<>();
+		final String description = OmlValidator.validate(resource, problems);
+		return new Result(description, problems);
+	}
+
+	private void writeReport() throws IOException {
+		if (!OmlValidateApp.TEXT.equals(reportFormat)) {
+			try (ReportWriter reportWriter = ReportWriter.create(reportFormat, Paths.get(reportPath), toolVersion)) {
+				for (URI uri : uris) {
+					reportWriter.write(results.get(uri).problems);
+				}
+			}
+			return;
+		}
+		final StringBuilder problems = new StringBuilder();
+		for (URI uri : uris) {
+			final String description = results.get(uri).description;
+			if (description.length() > 0) {
+				if (problems.length() > 0) {
+					problems.append("\n\n");
+				}
+				problems.append(description);
+			}
+		}
+		if (problems.length() > 0) {
+			Files.write(Paths.get(reportPath), problems.toString().getBytes());
+		} else {
+			Files.deleteIfExists(Paths.get(reportPath));
+		}
+	}
+}
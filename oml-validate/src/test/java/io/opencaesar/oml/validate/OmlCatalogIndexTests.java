@@ -0,0 +1,81 @@
+package io.opencaesar.oml.validate;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.Assert;
+import org.junit.Test;
+
+import io.opencaesar.oml.util.OmlResolve;
+import io.opencaesar.oml.validate.tests.OmlTestCatalog;
+
+public class OmlCatalogIndexTests {
+
+	private static final FileTime MODIFIED = FileTime.fromMillis(1600000000000L);
+
+	@Test
+	public void testIndexMatchesResolve() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-catalog-index-", OmlTestCatalog.valid());
+		try {
+			// hidden folders are resolved like any other folder
+			OmlTestCatalog.write(folder, ".hidden/h", OmlTestCatalog.D.replace("/d#", "/.hidden/h#"));
+			URI catalogUri = OmlTestCatalog.getCatalogUri(folder);
+			List<URI> uris = OmlCatalogIndex.resolveOmlFileUris(catalogUri);
+			Assert.assertEquals(new HashSet<>(OmlResolve.resolveOmlFileUris(catalogUri)), new HashSet<>(uris));
+			Assert.assertEquals(5, uris.size());
+			Assert.assertTrue(uris.contains(URI.createFileURI(folder.resolve("example.com/.hidden/h.oml").toFile().getAbsolutePath())));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testAddedFileIsIndexed() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-catalog-index-", OmlTestCatalog.valid());
+		try {
+			// the folder was not modified recently, so its index is reused until it changes
+			Files.setLastModifiedTime(folder.resolve("example.com"), MODIFIED);
+			URI catalogUri = OmlTestCatalog.getCatalogUri(folder);
+			Assert.assertEquals(4, OmlCatalogIndex.resolveOmlFileUris(catalogUri).size());
+			Assert.assertEquals(4, OmlCatalogIndex.resolveOmlFileUris(catalogUri).size());
+
+			OmlTestCatalog.write(folder, "e", OmlTestCatalog.D.replace("/d#", "/e#"));
+			List<URI> uris = OmlCatalogIndex.resolveOmlFileUris(catalogUri);
+			Assert.assertEquals(new HashSet<>(OmlResolve.resolveOmlFileUris(catalogUri)), new HashSet<>(uris));
+			Assert.assertTrue(uris.containsAll(OmlTestCatalog.getUris(folder, Arrays.asList("a", "b", "c", "d", "e"))));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testNoIndexFileIsWritten() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-catalog-index-", OmlTestCatalog.valid());
+		try {
+			Set<String> before = list(folder);
+			OmlCatalogIndex.resolveOmlFileUris(OmlTestCatalog.getCatalogUri(folder));
+			OmlCatalogIndex.resolveFolders(OmlTestCatalog.getCatalogUri(folder));
+			Assert.assertEquals(before, list(folder));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	private static Set<String> list(Path folder) {
+		Set<String> names = new HashSet<>();
+		for (File file : folder.toFile().listFiles()) {
+			names.add(file.getName());
+		}
+		for (File file : folder.resolve("example.com").toFile().listFiles()) {
+			names.add("example.com/" + file.getName());
+		}
+		return names;
+	}
+}
@@ -0,0 +1,136 @@
+package io.opencaesar.oml.validate;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.BasicDiagnostic;
+import org.eclipse.emf.common.util.Diagnostic;
+import org.eclipse.emf.common.util.DiagnosticChain;
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.EClass;
+import org.eclipse.emf.ecore.EDataType;
+import org.eclipse.emf.ecore.EObject;
+import org.eclipse.emf.ecore.EValidator;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.Diagnostician;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.eclipse.xtext.validation.CompositeEValidator;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opencaesar.oml.Member;
+import io.opencaesar.oml.Ontology;
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.resource.OmlXMIResourceFactory;
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+import io.opencaesar.oml.validate.tests.OmlTestCatalog;
+
+public class OmlValidatorTests {
+
+	@BeforeClass
+	public static void setUp() {
+		OmlStandaloneSetup.doSetup();
+		OmlXMIResourceFactory.register(false);
+	}
+
+	@Test
+	public void testProblemOfTextResourceHasLineAndColumn() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validator-", OmlTestCatalog.valid());
+		try {
+			URI uri = OmlTestCatalog.getUris(folder, Arrays.asList("a")).get(0);
+			Resource resource = new ResourceSetImpl().getResource(uri, true);
+			Problem problem = createProblem(resource);
+
+			// concept D is on the fifth line of a, after a tab
+			Assert.assertEquals(uri.toString(), problem.getUri());
+			Assert.assertEquals(5, problem.getLine());
+			Assert.assertEquals(2, problem.getColumn());
+			Assert.assertEquals(Problem.ERROR, problem.getSeverity());
+			Assert.assertNotNull(problem.getLabel());
+			Assert.assertEquals("D is invalid", problem.getMessage());
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testProblemOfXmiResourceHasNoLineAndColumn() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validator-", OmlTestCatalog.valid());
+		try {
+			URI uri = OmlTestCatalog.getUris(folder, Arrays.asList("a")).get(0);
+			URI xmiUri = uri.trimFileExtension().appendFileExtension("omlxmi");
+			Resource text = new ResourceSetImpl().getResource(uri, true);
+			Resource xmi = text.getResourceSet().createResource(xmiUri);
+			xmi.getContents().addAll(EcoreUtil.copyAll(text.getContents()));
+			xmi.save(Collections.emptyMap());
+
+			Resource resource = new ResourceSetImpl().getResource(xmiUri, true);
+			Problem problem = createProblem(resource);
+
+			Assert.assertEquals(xmiUri.toString(), problem.getUri());
+			Assert.assertEquals(-1, problem.getLine());
+			Assert.assertEquals(-1, problem.getColumn());
+			Assert.assertNotNull(problem.getLabel());
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testProfileTimesCombinedValidatorsSeparately() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validator-", OmlTestCatalog.valid());
+		try {
+			URI uri = OmlTestCatalog.getUris(folder, Arrays.asList("a")).get(0);
+			Ontology ontology = (Ontology) new ResourceSetImpl().getResource(uri, true).getContents().get(0);
+			ValidationProfile profile = new ValidationProfile();
+			Assert.assertEquals("", OmlValidator.validate(ontology, new ArrayList<>(), profile));
+			List<String> hotSpots = profile.getHotSpots(Integer.MAX_VALUE);
+			Assert.assertTrue(hotSpots.size() > 1);
+			for (String line : hotSpots) {
+				Assert.assertFalse(line, line.contains(CompositeEValidator.class.getSimpleName()));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testProfileLabelOfAnonymousValidator() {
+		EValidator validator = new EValidator() {
+			@Override
+			public boolean validate(EObject eObject, DiagnosticChain diagnostics, Map<Object, Object> context) {
+				return true;
+			}
+			@Override
+			public boolean validate(EClass eClass, EObject eObject, DiagnosticChain diagnostics, Map<Object, Object> context) {
+				return true;
+			}
+			@Override
+			public boolean validate(EDataType eDataType, Object value, DiagnosticChain diagnostics, Map<Object, Object> context) {
+				return true;
+			}
+		};
+		Assert.assertEquals(validator.getClass().getName(), OmlValidator.getLabel(validator));
+		Assert.assertEquals(CompositeEValidator.class.getSimpleName(), OmlValidator.getLabel(new CompositeEValidator()));
+	}
+
+	// the problem of an error diagnostic on concept D of the given resource of vocabulary a
+	private static Problem createProblem(Resource resource) {
+		Ontology ontology = (Ontology) resource.getContents().get(0);
+		Member member = null;
+		for (EObject eObject : (Iterable<EObject>) ontology::eAllContents) {
+			if (eObject instanceof Member && "a:D".equals(((Member) eObject).getAbbreviatedIri())) {
+				member = (Member) eObject;
+			}
+		}
+		Assert.assertNotNull(member);
+		Diagnostic diagnostic = new BasicDiagnostic(Diagnostic.ERROR, "test", 0, "D is invalid", new Object[] { member });
+		return OmlValidator.createProblem(ontology, diagnostic, new Diagnostician());
+	}
+}
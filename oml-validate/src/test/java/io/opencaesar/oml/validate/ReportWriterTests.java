@@ -0,0 +1,93 @@
+package io.opencaesar.oml.validate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+public class ReportWriterTests {
+
+	private static final List<Problem> PROBLEMS = Arrays.asList(
+			new Problem("file:/a.oml", 5, 2, Problem.ERROR, "a:D", "D is \"invalid\" in C:\\a\n\tsee\u0001 é€"),
+			new Problem("file:/b.omlxmi", -1, -1, Problem.ERROR, null, "b"));
+
+	private Path report;
+
+	@Before
+	public void setUp() throws IOException {
+		report = Files.createTempFile("oml-report-", ".out");
+	}
+
+	@After
+	public void tearDown() throws IOException {
+		Files.delete(report);
+	}
+
+	@Test
+	public void testJsonLines() throws IOException {
+		try (ReportWriter writer = ReportWriter.create(ReportWriter.JSONL, report, "1.0")) {
+			writer.write(PROBLEMS.subList(0, 1));
+			writer.write(Collections.emptyList());
+			writer.write(PROBLEMS.subList(1, 2));
+		}
+		Assert.assertEquals(
+				"{\"uri\":\"file:/a.oml\",\"line\":5,\"column\":2,\"severity\":\"error\",\"label\":\"a:D\",\"message\":\"D is \\\"invalid\\\" in C:\\\\a\\n\\tsee\\u0001 é€\"}\n"
+				+ "{\"uri\":\"file:/b.omlxmi\",\"line\":-1,\"column\":-1,\"severity\":\"error\",\"label\":null,\"message\":\"b\"}\n",
+				read());
+	}
+
+	@Test
+	public void testSarif() throws IOException {
+		try (ReportWriter writer = ReportWriter.create(ReportWriter.SARIF, report, "1.0")) {
+			writer.write(PROBLEMS);
+		}
+		String sarif = read();
+		Assert.assertEquals(
+				"{\"version\":\"2.1.0\",\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"runs\":[{"
+				+ "\"tool\":{\"driver\":{\"name\":\"oml-validate\",\"version\":\"1.0\"}},\"results\":[\n"
+				+ "{\"level\":\"error\",\"message\":{\"text\":\"D is \\\"invalid\\\" in C:\\\\a\\n\\tsee\\u0001 é€\"},"
+				+ "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"file:/a.oml\"},\"region\":{\"startLine\":5,\"startColumn\":2}},"
+				+ "\"logicalLocations\":[{\"fullyQualifiedName\":\"a:D\"}]}]},\n"
+				+ "{\"level\":\"error\",\"message\":{\"text\":\"b\"},"
+				+ "\"locations\":[{\"physicalLocation\":{\"artifactLocation\":{\"uri\":\"file:/b.omlxmi\"}}}]}"
+				+ "\n]}]}\n",
+				sarif);
+
+		// the properties required by the SARIF 2.1.0 schema
+		Assert.assertTrue(sarif.startsWith("{\"version\":\"2.1.0\""));
+		Assert.assertTrue(sarif.contains("\"runs\":[{\"tool\":{\"driver\":{\"name\":"));
+		Assert.assertEquals(PROBLEMS.size(), count(sarif, "\"message\":{\"text\":"));
+	}
+
+	@Test
+	public void testEmptySarifWithoutVersion() throws IOException {
+		ReportWriter.create(ReportWriter.SARIF, report, null).close();
+		Assert.assertEquals(
+				"{\"version\":\"2.1.0\",\"$schema\":\"https://json.schemastore.org/sarif-2.1.0.json\",\"runs\":[{"
+				+ "\"tool\":{\"driver\":{\"name\":\"oml-validate\"}},\"results\":[\n"
+				+ "\n]}]}\n",
+				read());
+	}
+
+	private String read() throws IOException {
+		return new String(Files.readAllBytes(report), StandardCharsets.UTF_8);
+	}
+
+	private static int count(String text, String part) {
+		int count = 0;
+		for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+			count++;
+		}
+		return count;
+	}
+}
@@ -0,0 +1,138 @@
+package io.opencaesar.oml.validate;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.eclipse.emf.common.util.URI;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+public class ValidationCacheTests {
+
+	private static final FileTime MODIFIED = FileTime.fromMillis(1600000000000L);
+
+	private Path folder;
+	private File catalog;
+	private URI a;
+	private URI b;
+	private URI c;
+	private Path cachePath;
+
+	@Before
+	public void setUp() throws IOException {
+		folder = Files.createTempDirectory("oml-validation-cache-");
+		catalog = write("catalog.xml", "<catalog/>").toFile();
+		a = URI.createFileURI(write("a.oml", "a").toString());
+		b = URI.createFileURI(write("b.oml", "b").toString());
+		c = URI.createFileURI(write("c.oml", "c").toString());
+		cachePath = folder.resolve("cache/validation.bin");
+
+		// b imports a, c imports nothing
+		ValidationCache cache = ValidationCache.load(cachePath);
+		Assert.assertEquals(Arrays.asList(a, b, c), cache.getOutdatedUris(catalog, uris()));
+		cache.record(a, "", Collections.emptyList(), Collections.emptyList());
+		cache.record(b, "b is \"invalid\"", Arrays.asList(new Problem(b.toString(), 3, 2, Problem.ERROR, null, "b is \"invalid\"\né")), Arrays.asList(a));
+		cache.record(c, "", Collections.emptyList(), Collections.emptyList());
+		cache.save();
+	}
+
+	@After
+	public void tearDown() {
+		for (File file : folder.resolve("cache").toFile().listFiles()) {
+			file.delete();
+		}
+		for (File file : folder.toFile().listFiles()) {
+			file.delete();
+		}
+		folder.toFile().delete();
+	}
+
+	@Test
+	public void testReuse() throws IOException {
+		ValidationCache cache = ValidationCache.load(cachePath);
+		Assert.assertEquals(Collections.emptyList(), cache.getOutdatedUris(catalog, uris()));
+		Assert.assertEquals("", cache.getResult(a));
+		Assert.assertEquals("b is \"invalid\"", cache.getResult(b));
+		List<Problem> problems = cache.getProblems(b);
+		Assert.assertEquals(1, problems.size());
+		Assert.assertEquals(b.toString(), problems.get(0).getUri());
+		Assert.assertEquals(3, problems.get(0).getLine());
+		Assert.assertEquals(2, problems.get(0).getColumn());
+		Assert.assertEquals(Problem.ERROR, problems.get(0).getSeverity());
+		Assert.assertNull(problems.get(0).getLabel());
+		Assert.assertEquals("b is \"invalid\"\né", problems.get(0).getMessage());
+	}
+
+	@Test
+	public void testChangedFile() throws IOException {
+		write("b.oml", "b2");
+		Assert.assertEquals(Arrays.asList(b), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	@Test
+	public void testChangedImportedFile() throws IOException {
+		write("a.oml", "a2");
+		Assert.assertEquals(Arrays.asList(a, b), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	@Test
+	public void testRemovedImportedFile() throws IOException {
+		Assert.assertEquals(Arrays.asList(b), ValidationCache.load(cachePath).getOutdatedUris(catalog, Arrays.asList(b, c)));
+	}
+
+	@Test
+	public void testChangedCatalog() throws IOException {
+		write("catalog.xml", "<catalog></catalog>");
+		Assert.assertEquals(uris(), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	@Test
+	public void testCorruptCache() throws IOException {
+		Files.write(cachePath, new byte[] { 0x4F, 0x4D, 0x4C });
+		Assert.assertEquals(uris(), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	@Test
+	public void testUnchangedStampIsNotHashedAgain() throws IOException {
+		// other contents with the same size and last-modified time are taken as unchanged
+		write("b.oml", "x");
+		Assert.assertEquals(Collections.emptyList(), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	@Test
+	public void testRecentlyModifiedFileIsHashedAgain() throws IOException {
+		// a file modified just before it is hashed may change again within its last-modified time granularity
+		Path file = write("c.oml", "c2");
+		FileTime now = FileTime.fromMillis(System.currentTimeMillis());
+		Files.setLastModifiedTime(file, now);
+		ValidationCache cache = ValidationCache.load(cachePath);
+		Assert.assertEquals(Arrays.asList(c), cache.getOutdatedUris(catalog, uris()));
+		cache.record(c, "", Collections.emptyList(), Collections.emptyList());
+		cache.save();
+		Files.write(file, "c3".getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, now);
+		Assert.assertEquals(Arrays.asList(c), ValidationCache.load(cachePath).getOutdatedUris(catalog, uris()));
+	}
+
+	private List<URI> uris() {
+		return Arrays.asList(a, b, c);
+	}
+
+	private Path write(String name, String contents) throws IOException {
+		Path file = folder.resolve(name);
+		Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+		Files.setLastModifiedTime(file, MODIFIED);
+		return file;
+	}
+}
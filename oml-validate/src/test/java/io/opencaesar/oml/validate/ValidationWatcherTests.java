@@ -0,0 +1,48 @@
+package io.opencaesar.oml.validate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.validate.tests.OmlTestCatalog;
+
+public class ValidationWatcherTests {
+
+	@BeforeClass
+	public static void setUp() {
+		OmlStandaloneSetup.doSetup();
+	}
+
+	@Test
+	public void testImportingOntologyIsValidatedAgainstChangedVocabulary() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validation-watcher-", OmlTestCatalog.valid());
+		try {
+			Path report = folder.resolve("report.txt");
+			ValidationWatcher watcher = new ValidationWatcher(new ResourceSetImpl(), OmlTestCatalog.getCatalogUri(folder), 1, report.toString(), OmlValidateApp.TEXT, null);
+			watcher.refresh(Collections.emptySet(), null);
+			Assert.assertFalse(Files.exists(report));
+
+			// d uses concept D of a, which is removed
+			OmlTestCatalog.write(folder, "a", OmlTestCatalog.A.replace("\tconcept D < C\n\n", ""));
+			watcher.refresh(new HashSet<>(OmlTestCatalog.getUris(folder, Arrays.asList("a"))), null);
+			Assert.assertTrue(Files.exists(report));
+			Assert.assertTrue(Files.readString(report, StandardCharsets.UTF_8).contains("d.oml"));
+
+			// d is valid again once D is restored
+			OmlTestCatalog.write(folder, "a", OmlTestCatalog.A);
+			watcher.refresh(new HashSet<>(OmlTestCatalog.getUris(folder, Arrays.asList("a"))), null);
+			Assert.assertFalse(Files.exists(report));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+}
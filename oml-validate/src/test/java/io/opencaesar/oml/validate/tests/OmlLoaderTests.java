@@ -0,0 +1,118 @@
+package io.opencaesar.oml.validate.tests;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.eclipse.emf.common.util.URI;
+import org.eclipse.emf.ecore.resource.Resource;
+import org.eclipse.emf.ecore.resource.ResourceSet;
+import org.eclipse.emf.ecore.resource.impl.ResourceSetImpl;
+import org.eclipse.emf.ecore.util.ECrossReferenceAdapter;
+import org.eclipse.emf.ecore.util.EcoreUtil;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import io.opencaesar.oml.dsl.OmlStandaloneSetup;
+import io.opencaesar.oml.validate.OmlLoader;
+import io.opencaesar.oml.validate.OmlValidator;
+import io.opencaesar.oml.validate.OmlValidator.Problem;
+
+public class OmlLoaderTests {
+
+	@BeforeClass
+	public static void setUp() {
+		OmlStandaloneSetup.doSetup();
+	}
+
+	@Test
+	public void testParallelLoadMatchesSequentialLoad() throws Exception {
+		Map<String, String> files = OmlTestCatalog.valid();
+		Path folder = OmlTestCatalog.create("oml-loader-", files);
+		try {
+			List<URI> uris = OmlTestCatalog.getUris(folder, files.keySet());
+			List<Resource> sequential = OmlLoader.load(createResourceSet(), uris, 1);
+			List<Resource> parallel = OmlLoader.load(createResourceSet(), uris, 4);
+
+			Assert.assertEquals(uris.size(), sequential.size());
+			Assert.assertEquals(uris.size(), parallel.size());
+			for (int i = 0; i < uris.size(); i++) {
+				Assert.assertEquals(uris.get(i), sequential.get(i).getURI());
+				Assert.assertEquals(uris.get(i), parallel.get(i).getURI());
+				Assert.assertTrue(sequential.get(i).getErrors().isEmpty());
+				Assert.assertTrue(parallel.get(i).getErrors().isEmpty());
+				Assert.assertTrue(EcoreUtil.equals(sequential.get(i).getContents(), parallel.get(i).getContents()));
+				Assert.assertEquals(getCrossReferences(sequential.get(i)), getCrossReferences(parallel.get(i)));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testCrossFileReferencesAreResolved() throws Exception {
+		Map<String, String> files = OmlTestCatalog.valid();
+		Path folder = OmlTestCatalog.create("oml-loader-", files);
+		try {
+			// only c is loaded explicitly, so b and a are loaded by resolving its references
+			List<URI> uris = OmlTestCatalog.getUris(folder, Arrays.asList("c"));
+			URI a = OmlTestCatalog.getUris(folder, Arrays.asList("a")).get(0);
+			for (int threads : new int[] { 1, 4 }) {
+				ResourceSet resourceSet = createResourceSet();
+				Resource c = OmlLoader.load(resourceSet, uris, threads).get(0);
+				List<String> references = getCrossReferences(c);
+				Assert.assertTrue(references.stream().anyMatch(r -> r.contains("/example.com/b.oml#")));
+				Assert.assertNotNull(resourceSet.getResource(a, false));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	// the references are resolved eagerly with threads and lazily without, so the problems are compared after validation
+	@Test
+	public void testUnresolvedReferencesAreReportedTheSameWay() throws Exception {
+		Map<String, String> files = OmlTestCatalog.withErrors(1);
+		Path folder = OmlTestCatalog.create("oml-loader-", files);
+		try {
+			List<URI> uris = OmlTestCatalog.getUris(folder, files.keySet());
+			List<Resource> sequential = OmlLoader.load(createResourceSet(), uris, 1);
+			List<Resource> parallel = OmlLoader.load(createResourceSet(), uris, 4);
+			for (int i = 0; i < uris.size(); i++) {
+				Assert.assertEquals(getProblems(sequential.get(i)), getProblems(parallel.get(i)));
+			}
+			Assert.assertFalse(getProblems(sequential.get(uris.size() - 1)).isEmpty());
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	private static ResourceSet createResourceSet() {
+		ResourceSet resourceSet = new ResourceSetImpl();
+		resourceSet.eAdapters().add(new ECrossReferenceAdapter());
+		return resourceSet;
+	}
+
+	// the URIs of the objects referenced from the given resource, which must all be resolved
+	private static List<String> getCrossReferences(Resource resource) {
+		List<String> references = new ArrayList<>();
+		resource.getAllContents().forEachRemaining(o -> o.eCrossReferences().forEach(r -> {
+			Assert.assertFalse(r.eIsProxy());
+			references.add(EcoreUtil.getURI(r).toString());
+		}));
+		return references;
+	}
+
+	private static List<String> getProblems(Resource resource) {
+		List<Problem> problems = new ArrayList<>();
+		OmlValidator.validate(resource, problems);
+		List<String> messages = new ArrayList<>();
+		for (Problem problem : problems) {
+			messages.add(problem.getLine() + ":" + problem.getColumn() + " " + problem.getMessage());
+		}
+		return messages;
+	}
+}
@@ -0,0 +1,99 @@
+package io.opencaesar.oml.validate.tests;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.beust.jcommander.JCommander;
+
+import io.opencaesar.oml.validate.OmlValidateApp;
+
+public class OmlValidateTests {
+
+	@Test
+	public void testValidCatalog() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validate-", OmlTestCatalog.valid());
+		try {
+			Path report = folder.resolve("report.txt");
+			validate(folder, report, "text", 1);
+			Assert.assertFalse(Files.exists(report));
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testParallelReportMatchesSequentialReport() throws Exception {
+		Map<String, String> files = OmlTestCatalog.withErrors(8);
+		Path folder = OmlTestCatalog.create("oml-validate-", files);
+		try {
+			for (String format : new String[] { "text", "jsonl", "sarif" }) {
+				Path sequential = folder.resolve("sequential." + format);
+				Path parallel = folder.resolve("parallel." + format);
+				Assert.assertFalse(validate(folder, sequential, format, 1));
+				Assert.assertFalse(validate(folder, parallel, format, 4));
+				String report = new String(Files.readAllBytes(sequential), StandardCharsets.UTF_8);
+				Assert.assertEquals(report, new String(Files.readAllBytes(parallel), StandardCharsets.UTF_8));
+
+				// the problems are reported in catalog order
+				int previous = -1;
+				for (int i = 0; i < 8; i++) {
+					int index = report.indexOf("Missing" + i);
+					Assert.assertTrue(format + ": e" + i, index > previous);
+					previous = index;
+				}
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	@Test
+	public void testParallelCachedRootValidationMatchesSequentialValidation() throws Exception {
+		Path folder = OmlTestCatalog.create("oml-validate-", OmlTestCatalog.withErrors(4));
+		try {
+			String[] roots = { "-r", "http://example.com/c", "-r", "http://example.com/e2" };
+			Path sequential = folder.resolve("sequential.jsonl");
+			Assert.assertFalse(validate(folder, sequential, "jsonl", 1, roots));
+			String report = new String(Files.readAllBytes(sequential), StandardCharsets.UTF_8);
+			Assert.assertTrue(report.contains("Missing2"));
+			Assert.assertFalse(report.contains("Missing1"));
+
+			// the second run reuses the results cached by the first one
+			String cache = folder.resolve("validation.cache").toFile().getAbsolutePath();
+			for (int run = 0; run < 2; run++) {
+				Path parallel = folder.resolve("parallel" + run + ".jsonl");
+				Assert.assertFalse(validate(folder, parallel, "jsonl", 4, roots[0], roots[1], roots[2], roots[3], "-c", cache));
+				Assert.assertEquals(report, new String(Files.readAllBytes(parallel), StandardCharsets.UTF_8));
+			}
+		} finally {
+			OmlTestCatalog.delete(folder);
+		}
+	}
+
+	// returns whether the catalog is valid
+	private static boolean validate(Path folder, Path report, String format, int threads, String... options) throws Exception {
+		OmlValidateApp app = new OmlValidateApp();
+		List<String> args = new ArrayList<>(Arrays.asList(
+				"-i", folder.resolve("catalog.xml").toFile().getAbsolutePath(),
+				"-o", report.toFile().getAbsolutePath(),
+				"-f", format,
+				"-t", String.valueOf(threads)));
+		args.addAll(Arrays.asList(options));
+		JCommander.newBuilder().addObject(app).build().parse(args.toArray(new String[0]));
+		try {
+			app.run();
+			return true;
+		} catch (IllegalStateException e) {
+			Assert.assertTrue(e.getMessage().startsWith("Problems validating OML catalog"));
+			return false;
+		}
+	}
+}
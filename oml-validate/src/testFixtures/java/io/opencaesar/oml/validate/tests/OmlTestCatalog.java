@@ -0,0 +1,178 @@
+package io.opencaesar.oml.validate.tests;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+import org.eclipse.emf.common.util.URI;
+
+/**
+ * A catalog of OML files written to a temporary folder for the tests, whose URIs starting with
+ * http://example.com/ are rewritten to its example.com folder
+ */
+public final class OmlTestCatalog {
+
+	/**
+	 * A vocabulary
+	 */
+	public static final String A = "vocabulary <http://example.com/a#> as a {\n\n\tconcept C\n\n\tconcept D < C\n\n}\n";
+
+	/**
+	 * A vocabulary extending a
+	 */
+	public static final String B = "vocabulary <http://example.com/b#> as b {\n\n\textends <http://example.com/a#> as a\n\n\tconcept E < a:C\n\n}\n";
+
+	/**
+	 * A description using b
+	 */
+	public static final String C = "description <http://example.com/c#> as c {\n\n\tuses <http://example.com/b#> as b\n\n\tinstance i1 : b:E\n\n}\n";
+
+	/**
+	 * A description using a
+	 */
+	public static final String D = "description <http://example.com/d#> as d {\n\n\tuses <http://example.com/a#> as a\n\n\tinstance j : a:D\n\n}\n";
+
+	/**
+	 * A description extending c and d
+	 */
+	public static final String E = "description <http://example.com/e#> as e {\n\n\textends <http://example.com/c#> as c\n\n\textends <http://example.com/d#> as d\n\n}\n";
+
+	private static final String CATALOG = "<?xml version='1.0'?>\n"
+			+ "<catalog xmlns=\"urn:oasis:names:tc:entity:xmlns:xml:catalog\" prefer=\"public\">\n"
+			+ "\t<rewriteURI uriStartString=\"http://example.com/\" rewritePrefix=\"./example.com/\" />\n"
+			+ "</catalog>\n";
+
+	private OmlTestCatalog() {
+	}
+
+	/**
+	 * Returns the valid OML files a, b, c and d, by name
+	 *
+	 * @return the contents of the files by name
+	 */
+	public static Map<String, String> valid() {
+		Map<String, String> files = new LinkedHashMap<>();
+		files.put("a", A);
+		files.put("b", B);
+		files.put("c", C);
+		files.put("d", D);
+		return files;
+	}
+
+	/**
+	 * Returns the valid OML files, followed by descriptions (e0, e1, ...) with one unresolved reference each
+	 *
+	 * @param count the number of descriptions with an unresolved reference
+	 * @return the contents of the files by name
+	 */
+	public static Map<String, String> withErrors(int count) {
+		Map<String, String> files = valid();
+		for (int i = 0; i < count; i++) {
+			files.put("e" + i, "description <http://example.com/e" + i + "#> as e" + i + " {\n\n\tuses <http://example.com/a#> as a\n\n"
+					+ "\tinstance k : a:Missing" + i + "\n\n}\n");
+		}
+		return files;
+	}
+
+	/**
+	 * Creates a temporary folder with a catalog.xml file and the given OML files in its example.com folder
+	 *
+	 * @param prefix the prefix of the folder name
+	 * @param files the contents of the OML files by name (without extension)
+	 * @return the folder
+	 * @throws IOException error
+	 */
+	public static Path create(String prefix, Map<String, String> files) throws IOException {
+		Path folder = Files.createTempDirectory(prefix);
+		Files.write(folder.resolve("catalog.xml"), CATALOG.getBytes(StandardCharsets.UTF_8));
+		for (Map.Entry<String, String> file : files.entrySet()) {
+			write(folder, file.getKey(), file.getValue());
+		}
+		return folder;
+	}
+
+	/**
+	 * Writes an OML file to the example.com folder of the given folder
+	 *
+	 * @param folder the folder of the catalog
+	 * @param name the name of the file (without extension)
+	 * @param contents the contents of the file
+	 * @return the path of the file
+	 * @throws IOException error
+	 */
+	public static Path write(Path folder, String name, String contents) throws IOException {
+		Path file = folder.resolve("example.com").resolve(name + ".oml");
+		Files.createDirectories(file.getParent());
+		Files.write(file, contents.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * Returns the URI of the catalog in the given folder
+	 *
+	 * @param folder the folder of the catalog
+	 * @return the URI of the catalog
+	 */
+	public static URI getCatalogUri(Path folder) {
+		return URI.createFileURI(folder.resolve("catalog.xml").toFile().getAbsolutePath());
+	}
+
+	/**
+	 * Returns the file URIs of the given OML files of the given folder, in order
+	 *
+	 * @param folder the folder of the catalog
+	 * @param names the names of the files (without extension)
+	 * @return the URIs of the files
+	 */
+	public static List<URI> getUris(Path folder, Iterable<String> names) {
+		List<URI> uris = new ArrayList<>();
+		for (String name : names) {
+			uris.add(URI.createFileURI(folder.resolve("example.com").resolve(name + ".oml").toFile().getAbsolutePath()));
+		}
+		return uris;
+	}
+
+	/**
+	 * Returns the contents of the files in the given folder (and its subfolders) by relative path
+	 *
+	 * @param folder the folder
+	 * @return the contents of the files, sorted by path
+	 * @throws IOException error
+	 */
+	public static Map<String, byte[]> read(Path folder) throws IOException {
+		Map<String, byte[]> files = new TreeMap<>();
+		try (Stream<Path> paths = Files.walk(folder)) {
+			for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+				files.put(folder.relativize(path).toString().replace(File.separatorChar, '/'), Files.readAllBytes(path));
+			}
+		}
+		return files;
+	}
+
+	/**
+	 * Deletes the given folder and its contents
+	 *
+	 * @param folder the folder
+	 */
+	public static void delete(Path folder) {
+		deleteRecursively(folder.toFile());
+	}
+
+	private static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		file.delete();
+	}
+}